@@ -0,0 +1,176 @@
+package cs1302.game;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * The {@link cs1302.game.AnsiRenderer} class redraws only what changed since the last
+ * frame, using ANSI escape sequences to move the cursor. It listens to the board for
+ * changed squares and, for each frame, repaints those squares, the rounds counter and
+ * the prompt, so a move costs output proportional to the squares it changed rather than
+ * to the size of the board.
+ *
+ * <p>A full frame is still drawn first, whenever the "nofog" view is shown or left,
+ * and when so many squares changed at once that a full frame is cheaper. Squares are
+ * addressed by their line on the screen, which only holds while nothing has scrolled,
+ * so a message of more than one line below the prompt is followed by a full frame, and
+ * a board too tall for the screen is always drawn in full. The screen is taken to be
+ * {@code LINES} lines high when the shell exports it, and
+ * {@value #DEFAULT_SCREEN_LINES} otherwise.
+ */
+public class AnsiRenderer implements MinesweeperBoard.Listener {
+
+    private static final String ESC = "\u001b[";
+    private static final String CLEAR_SCREEN = ESC + "H" + ESC + "2J";
+    private static final String CLEAR_LINE = ESC + "2K";
+    private static final String CLEAR_TO_END = ESC + "J";
+
+    /** The screen line of the rounds counter. */
+    private static final int ROUNDS_LINE = 2;
+    /** The screen line of the first row of the board. */
+    private static final int FIRST_ROW_LINE = 4;
+    /** The lines below the prompt used by a move: the player's line and one blank. */
+    private static final int MOVE_LINES = 2;
+    /** The height of the screen assumed when the shell does not export {@code LINES}. */
+    private static final int DEFAULT_SCREEN_LINES = 24;
+
+    private final MinesweeperBoard board;
+    private final StringBuilder frame = new StringBuilder();
+    private final int maxChanges;
+    //false when the board and prompt do not fit on the screen without scrolling
+    private final boolean fits;
+    private int[] changed = new int[64];
+    private int changedCount = 0;
+    private boolean fullFramePending = true;
+    private boolean noFogShown = false;
+
+    /**
+     * Creates a renderer that listens to a board for changed squares.
+     * @param board the board to draw
+     */
+    public AnsiRenderer(MinesweeperBoard board) {
+        this.board = board;
+        //past a quarter of the board, one full frame costs less than moving the cursor
+        this.maxChanges = Math.max(64, board.getRows() * board.getCols() / 4);
+        //the prompt is two lines below the last row
+        this.fits = (long) FIRST_ROW_LINE + board.getRows() + 2 + MOVE_LINES
+            <= screenLines(System.getenv("LINES"));
+        board.addListener(this);
+    }
+
+    /**
+     * Records a changed square to be repainted in the next frame.
+     * @param index the flat index of the square
+     */
+    @Override
+    public void squareChanged(int index) {
+        if (fullFramePending || !fits) {
+            return;
+        }
+        if (changedCount == maxChanges) {
+            fullFramePending = true;
+            changedCount = 0;
+            return;
+        }
+        if (changedCount == changed.length) {
+            changed = Arrays.copyOf(changed, Math.min(changedCount * 2, maxChanges));
+        }
+        changed[changedCount++] = index;
+    }
+
+    /**
+     * Indicates whether or not the next frame has to be drawn in full. When it does,
+     * the screen is cleared and the caller draws the frame as usual.
+     * @param out the stream to write to
+     * @param noFog true if the next frame is the "nofog" view or another special view
+     * @return true if the caller must draw a full frame; false otherwise
+     */
+    public boolean startFrame(PrintStream out, boolean noFog) {
+        if (fullFramePending || noFog || noFogShown || !fits) {
+            out.print(CLEAR_SCREEN);
+            fullFramePending = false;
+            noFogShown = noFog;
+            changedCount = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Repaints the changed squares, the rounds counter and the prompt.
+     * @param out the stream to write to
+     * @param roundsCompleted the number of rounds completed so far
+     */
+    public void printChanges(PrintStream out, int roundsCompleted) {
+        frame.setLength(0);
+        int cols = board.getCols();
+        for (int k = 0; k < changedCount; k++) {
+            int row = changed[k] / cols;
+            int col = changed[k] - row * cols;
+            //each row starts with its index and " |", then each square is four wide
+            moveTo(FIRST_ROW_LINE + row, digits(row) + 3 + col * 4);
+            frame.append(board.glyph(row, col));
+        }
+        changedCount = 0;
+        moveTo(ROUNDS_LINE, 1);
+        frame.append(CLEAR_LINE).append(MinesweeperGame.ROUNDS_LABEL).append(roundsCompleted);
+        moveTo(FIRST_ROW_LINE + board.getRows() + 2, 1);
+        frame.append(CLEAR_LINE).append(MinesweeperGame.PROMPT);
+        out.print(frame);
+    }
+
+    /**
+     * Clears everything below the cursor. Called once the player's command has been
+     * read, so messages left over from the previous command are removed.
+     * @param out the stream to write to
+     */
+    public void clearBelow(PrintStream out) {
+        out.print(CLEAR_TO_END);
+    }
+
+    /**
+     * Makes the next frame a full one. Called after a message of more than one line was
+     * printed below the prompt, which may have scrolled the screen.
+     */
+    public void messageShown() {
+        fullFramePending = true;
+        changedCount = 0;
+    }
+
+    /**
+     * Returns the height of the screen given by the {@code LINES} variable.
+     * @param lines the value of the variable, or null if it is not set
+     * @return the number of lines, or {@link #DEFAULT_SCREEN_LINES} if it is not set or
+     *     not a positive number
+     */
+    private static int screenLines(String lines) {
+        try {
+            int parsed = lines == null ? 0 : Integer.parseInt(lines.trim());
+            return parsed > 0 ? parsed : DEFAULT_SCREEN_LINES;
+        } catch (NumberFormatException e) {
+            return DEFAULT_SCREEN_LINES;
+        }
+    }
+
+    /**
+     * Appends the sequence moving the cursor to a screen position.
+     * @param line the one-based screen line
+     * @param column the one-based screen column
+     */
+    private void moveTo(int line, int column) {
+        frame.append(ESC).append(line).append(';').append(column).append('H');
+    }
+
+    /**
+     * Returns the number of decimal digits of a non-negative int.
+     * @param value the value to measure
+     * @return the number of digits
+     */
+    private static int digits(int value) {
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,360 @@
+package cs1302.game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * The {@link cs1302.game.AsyncOutput} class lets a game print without waiting on a
+ * terminal or pipe. What is printed to {@link #getOut} and {@link #getErr} is queued in
+ * a bounded ring, and a daemon writer thread takes it from the ring and writes it to the
+ * real streams, in the order it was printed across both of them.
+ *
+ * <p>Printed bytes are queued in pieces: as a frame, for whatever is printed between
+ * {@link #beginFrame} and {@link #endFrame}, or as a message, for anything else, once
+ * the other stream is printed to, a frame begins, it grows large, or the stream is
+ * flushed. With coalescing on, a full ring makes room by dropping the oldest frame that
+ * has not been written, since a newer frame shows the same board. Messages are never
+ * dropped, so once the ring is full of them the game waits for the writer. Coalescing
+ * must stay off when every byte matters, such as for a pipe or file that is checked
+ * later, or frames that only redraw what changed since the frame before.
+ */
+public class AsyncOutput {
+
+    /** The number of frames and messages the ring holds by default. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    //a message is queued once this many bytes of it have been printed
+    private static final int MESSAGE_LIMIT = 1 << 13;
+    private static final int OUT = 0;
+    private static final int ERR = 1;
+
+    private final OutputStream[] targets;
+    private final boolean coalesce;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Piece[] ring;
+    private int head = 0;
+    private int count = 0;
+    //the bytes printed but not queued yet, and the stream they were printed to
+    private byte[] pending = new byte[MESSAGE_LIMIT];
+    private int pendingLength = 0;
+    private int pendingStream = OUT;
+    private boolean inFrame = false;
+    private boolean closed = false;
+    private boolean failed = false;
+    private long droppedFrames = 0;
+    private final Thread writer;
+    private Thread hook;
+
+    /**
+     * Bytes queued to be written to one of the streams.
+     */
+    private static class Piece {
+
+        private final int stream;
+        private final byte[] bytes;
+        private final boolean frame;
+
+        /**
+         * Creates a piece of output.
+         * @param stream {@link #OUT} or {@link #ERR}
+         * @param bytes the bytes to write
+         * @param frame true if the piece is a frame; false if it is a message
+         */
+        Piece(int stream, byte[] bytes, boolean frame) {
+            this.stream = stream;
+            this.bytes = bytes;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * The stream printed to by {@link #out} or {@link #err}.
+     */
+    private class Sink extends OutputStream {
+
+        private final int stream;
+
+        /**
+         * Creates the sink of a stream.
+         * @param stream {@link #OUT} or {@link #ERR}
+         */
+        Sink(int stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) {
+            print(stream, new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            print(stream, bytes, offset, length);
+        }
+
+        @Override
+        public void flush() {
+            queueMessage();
+        }
+    }
+
+    /**
+     * Creates an output and starts its writer thread.
+     * @param out the stream written to by {@link #getOut}
+     * @param err the stream written to by {@link #getErr}
+     * @param capacity the number of frames and messages the ring holds
+     * @param coalesce true to drop stale frames when the ring is full; false to wait
+     */
+    public AsyncOutput(OutputStream out, OutputStream err, int capacity, boolean coalesce) {
+        this.targets = new OutputStream[] {out, err};
+        this.coalesce = coalesce;
+        this.ring = new Piece[capacity];
+        this.out = new PrintStream(new Sink(OUT), false);
+        this.err = new PrintStream(new Sink(ERR), false);
+        writer = new Thread(this::drain, "output-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the stream that stands in for standard output.
+     * @return the output stream
+     */
+    public PrintStream getOut() {
+        return out;
+    }
+
+    /**
+     * Returns the stream that stands in for standard error.
+     * @return the error stream
+     */
+    public PrintStream getErr() {
+        return err;
+    }
+
+    /**
+     * Starts a frame: what is printed until {@link #endFrame} may be dropped if a newer
+     * frame is printed before the writer gets to it.
+     */
+    public synchronized void beginFrame() {
+        queue(false);
+        inFrame = true;
+    }
+
+    /**
+     * Ends a frame started by {@link #beginFrame} and queues it.
+     */
+    public synchronized void endFrame() {
+        queue(true);
+        inFrame = false;
+    }
+
+    /**
+     * Returns the number of frames dropped because the writer fell behind.
+     * @return the number of frames dropped
+     */
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Indicates whether or not writing to the real streams has failed, like
+     * {@link PrintStream#checkError}. Once it fails, everything printed is thrown away.
+     * @return true if a write failed; false otherwise
+     */
+    public synchronized boolean checkError() {
+        return failed;
+    }
+
+    /**
+     * Writes everything printed so far and stops the writer thread. Anything printed
+     * after this is thrown away.
+     */
+    public void close() {
+        out.flush();
+        err.flush();
+        synchronized (this) {
+            queue(false);
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (hook != null && Thread.currentThread() != hook) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(hook);
+                } catch (IllegalStateException e) {
+                    //the process is exiting, and the hook has nothing left to write anyway
+                }
+            }
+            hook = null;
+        }
+    }
+
+    /**
+     * Makes sure everything printed is written when the process exits, even through
+     * {@link System#exit}, without {@link #close} being called.
+     */
+    public synchronized void closeOnExit() {
+        if (hook == null && !closed) {
+            hook = new Thread(this::close, "output-close");
+            Runtime.getRuntime().addShutdownHook(hook);
+        }
+    }
+
+    /**
+     * Adds printed bytes to the pending piece, queuing what is pending first if it
+     * belongs to the other stream.
+     * @param stream {@link #OUT} or {@link #ERR}
+     * @param bytes the bytes printed
+     * @param offset where the bytes start
+     * @param length the number of bytes
+     */
+    private synchronized void print(int stream, byte[] bytes, int offset, int length) {
+        if (closed) {
+            return;
+        }
+        if (stream != pendingStream) {
+            queue(false);
+            pendingStream = stream;
+        }
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+        }
+        System.arraycopy(bytes, offset, pending, pendingLength, length);
+        pendingLength += length;
+        if (!inFrame && pendingLength >= MESSAGE_LIMIT) {
+            queue(false);
+        }
+    }
+
+    /**
+     * Queues what is pending as a message, unless a frame is being printed.
+     */
+    private synchronized void queueMessage() {
+        if (!inFrame) {
+            queue(false);
+        }
+    }
+
+    /**
+     * Queues what is pending, waiting for room in the ring if it is full and no frame
+     * can be dropped.
+     * @param frame true to queue it as a frame; false to queue it as a message
+     */
+    private synchronized void queue(boolean frame) {
+        if (pendingLength == 0 || closed) {
+            return;
+        }
+        Piece piece = new Piece(pendingStream, Arrays.copyOf(pending, pendingLength), frame);
+        pendingLength = 0;
+        boolean interrupted = false;
+        while (count == ring.length && !(coalesce && dropFrame())) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        ring[(head + count) % ring.length] = piece;
+        count++;
+        notifyAll();
+    }
+
+    /**
+     * Drops the oldest frame in the ring, moving the pieces queued after it up.
+     * @return true if a frame was dropped; false if the ring holds only messages
+     */
+    private boolean dropFrame() {
+        for (int i = 0; i < count; i++) {
+            if (ring[(head + i) % ring.length].frame) {
+                for (int j = i; j < count - 1; j++) {
+                    ring[(head + j) % ring.length] = ring[(head + j + 1) % ring.length];
+                }
+                ring[(head + count - 1) % ring.length] = null;
+                count--;
+                droppedFrames++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the pieces queued in the ring until the output is closed and the ring is
+     * empty. Runs on the writer thread.
+     */
+    private void drain() {
+        Piece[] batch = new Piece[ring.length];
+        while (true) {
+            int taken;
+            synchronized (this) {
+                while (count == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        //only close stops the writer
+                    }
+                }
+                if (count == 0) {
+                    return;
+                }
+                taken = count;
+                for (int i = 0; i < taken; i++) {
+                    batch[i] = ring[head];
+                    ring[head] = null;
+                    head = (head + 1) % ring.length;
+                }
+                count = 0;
+                notifyAll();
+            }
+            write(batch, taken);
+            Arrays.fill(batch, 0, taken, null);
+        }
+    }
+
+    /**
+     * Writes a batch of pieces, flushing each stream before the other one is written to,
+     * so they interleave as they were printed.
+     * @param batch the pieces
+     * @param taken the number of pieces in the batch
+     */
+    private void write(Piece[] batch, int taken) {
+        if (checkError()) {
+            return;
+        }
+        try {
+            int last = -1;
+            for (int i = 0; i < taken; i++) {
+                if (last >= 0 && batch[i].stream != last) {
+                    targets[last].flush();
+                }
+                targets[batch[i].stream].write(batch[i].bytes);
+                last = batch[i].stream;
+            }
+            if (last >= 0) {
+                targets[last].flush();
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failed = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package cs1302.game;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * The {@link cs1302.game.BatchReplay} class replays a directory of recorded games
+ * through one {@link MinesweeperEngine} in a single JVM. Each game is a pair of files:
+ * {@code NAME.script} holds one command per line and {@code NAME.seed} is the text or
+ * binary seed file it is played on. Seeds are loaded through the {@link SeedCache}, so
+ * scripts played on the same seed share its parsed board. The engine and the board are
+ * reused from one game to the next: the board is restored onto the cached one, sharing
+ * its chunks until a move writes to them. One result line is printed per game, followed by a summary.
+ */
+public class BatchReplay {
+
+    /** The extension of recorded command scripts. */
+    public static final String SCRIPT_EXTENSION = ".script";
+    /** The extension of the seed file played by a script. */
+    public static final String SEED_EXTENSION = ".seed";
+
+    private MinesweeperBoard board;
+    private MinesweeperEngine engine;
+
+    /**
+     * Replays every script in the directory named by the first argument. With
+     * {@code --boards} as the second argument, the final board of each game is printed.
+     * @param args contains the script directory and optional {@code --boards} flag
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2
+            || (args.length == 2 && !args[1].equals("--boards"))) {
+            System.err.println("Usage: BatchReplay SCRIPT_DIR [--boards]");
+            System.exit(1);
+        }
+        File[] scripts = listScripts(new File(args[0]));
+        if (scripts == null) {
+            System.err.println("Script Directory Not Found Error: " + args[0]);
+            System.exit(2);
+        }
+        boolean printBoards = args.length == 2;
+        BatchReplay replay = new BatchReplay();
+        int games = 0;
+        long start = System.nanoTime();
+        for (File script : scripts) {
+            String name = gameName(script);
+            try {
+                GameResult result = replay.play(seedFor(script), script, printBoards);
+                System.out.println(name + ": " + result);
+                if (printBoards) {
+                    System.out.print(result.getFinalBoard());
+                }
+                games++;
+            } catch (InputMismatchException e) {
+                System.out.println(name + ": Seed File Malformed Error");
+            } catch (IOException e) {
+                System.out.println(name + ": Seed File Not Found Error: " + e.getMessage());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Replayed %d games in %.3f s (%.1f games/sec)%n", games, seconds,
+            games / Math.max(seconds, 1e-9));
+        System.out.println(SeedCache.getDefault());
+    }
+
+    /**
+     * Plays one recorded script on its seed's board from the {@link SeedCache}, restored
+     * into the board of the previous game when the two have the same size.
+     * @param seed the seed file to play on
+     * @param script the file of commands to apply
+     * @param captureBoard true to keep the final board in the result
+     * @return the outcome of the game
+     * @throws IOException if either file cannot be read
+     * @throws InputMismatchException if the seed file is malformed
+     */
+    public GameResult play(File seed, File script, boolean captureBoard) throws IOException {
+        board = SeedCache.getDefault().load(seed.getPath(), board);
+        if (engine == null) {
+            engine = new MinesweeperEngine(board);
+        } else {
+            engine.reset(board);
+        }
+        try (BufferedReader commands = Files.newBufferedReader(script.toPath(),
+            StandardCharsets.UTF_8)) {
+            return engine.run(commands, captureBoard);
+        }
+    }
+
+    /**
+     * Returns the scripts in a directory in name order.
+     * @param directory the directory to list
+     * @return the script files, or null if the directory cannot be listed
+     */
+    public static File[] listScripts(File directory) {
+        File[] scripts = directory.listFiles((dir, name) -> name.endsWith(SCRIPT_EXTENSION));
+        if (scripts != null) {
+            Arrays.sort(scripts);
+        }
+        return scripts;
+    }
+
+    /**
+     * Returns the seed file that belongs to a script.
+     * @param script the script file
+     * @return the seed file with the same name next to it
+     */
+    public static File seedFor(File script) {
+        return new File(script.getParentFile(), gameName(script) + SEED_EXTENSION);
+    }
+
+    /**
+     * Returns the name of a game, which is its script's file name without the extension.
+     * @param script the script file
+     * @return the name of the game
+     */
+    public static String gameName(File script) {
+        String fileName = script.getName();
+        return fileName.substring(0, fileName.length() - SCRIPT_EXTENSION.length());
+    }
+}
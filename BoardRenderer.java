@@ -0,0 +1,170 @@
+package cs1302.game;
+
+import java.io.PrintStream;
+
+/**
+ * The {@link cs1302.game.BoardRenderer} class draws a {@link MinesweeperBoard} into a
+ * reusable byte buffer and writes the whole frame with a single call, instead of
+ * printing every square separately. The normal view and the "nofog" view are drawn by
+ * the same code, as is the odds view of {@link MineProbabilities}; only the glyph chosen
+ * for each square differs.
+ *
+ * <p>The buffer is sized once for the board. Frames larger than {@link #MAX_BUFFER}
+ * are written one full buffer at a time. Renderers of boards of the same size that never
+ * draw at the same time, such as those of the games a server plays on one thread, can
+ * share one buffer.
+ */
+public class BoardRenderer {
+
+    /** The largest buffer a renderer allocates. */
+    public static final int MAX_BUFFER = 1 << 20;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final MinesweeperBoard board;
+    private final byte[] buffer;
+    private int length = 0;
+    private PrintStream out;
+
+    /**
+     * Creates a renderer for a board, sizing its buffer for the largest frame.
+     * @param board the board to draw
+     */
+    public BoardRenderer(MinesweeperBoard board) {
+        this.board = board;
+        int rows = board.getRows();
+        int cols = board.getCols();
+        int labelWidth = Integer.toString(Math.max(rows, cols)).length() + 2;
+        //every square is at most four bytes wide in the nofog view, plus its separator
+        long frameSize = (long) rows * (labelWidth + cols * 5L + LINE_SEPARATOR.length)
+            + 4 + (long) cols * (labelWidth + 3) + LINE_SEPARATOR.length;
+        this.buffer = new byte[(int) Math.min(frameSize, MAX_BUFFER)];
+    }
+
+    /**
+     * Creates a renderer for a board that draws into the buffer of another renderer, so
+     * the two must never draw at the same time.
+     * @param board the board to draw
+     * @param shared the renderer of a board of the same size whose buffer is used
+     * @throws IllegalArgumentException if the boards differ in size
+     */
+    public BoardRenderer(MinesweeperBoard board, BoardRenderer shared) {
+        if (board.getRows() != shared.board.getRows()
+            || board.getCols() != shared.board.getCols()) {
+            throw new IllegalArgumentException("Cannot share the buffer of a "
+                + shared.board.getRows() + " by " + shared.board.getCols() + " board");
+        }
+        this.board = board;
+        this.buffer = shared.buffer;
+    }
+
+    /**
+     * Draws the board and writes it to {@code out}.
+     * @param out the stream to write the frame to
+     * @param noFog true to show where the mines are; false for the normal view
+     */
+    public void print(PrintStream out, boolean noFog) {
+        draw(out, noFog, null);
+    }
+
+    /**
+     * Draws the odds view of the board, in which every hidden square shows its chance of
+     * holding a mine, and writes it to {@code out}.
+     * @param out the stream to write the frame to
+     * @param odds the odds calculated for the board
+     */
+    public void printOdds(PrintStream out, MineProbabilities odds) {
+        draw(out, false, odds);
+    }
+
+    /**
+     * Draws one of the views of the board and writes it to {@code out}.
+     * @param out the stream to write the frame to
+     * @param noFog true to show where the mines are
+     * @param odds the odds to show for hidden squares, or null for the other views
+     */
+    private void draw(PrintStream out, boolean noFog, MineProbabilities odds) {
+        this.out = out;
+        length = 0;
+        int rows = board.getRows();
+        int cols = board.getCols();
+        for (int i = 0; i < rows; i++) {
+            //prints out index numbers on grid
+            appendInt(i);
+            append(" |");
+            for (int j = 0; j < cols; j++) {
+                if (odds != null) {
+                    append(odds.glyph(i, j));
+                } else {
+                    append(noFog ? board.noFogGlyph(i, j) : board.glyph(i, j));
+                }
+                if (j < cols - 1) {
+                    append("|");
+                }
+            }
+            append("|");
+            append(LINE_SEPARATOR);
+        }
+        append("    ");
+        for (int i = 0; i < cols; i++) {
+            appendInt(i);
+            append("   ");
+        }
+        append(LINE_SEPARATOR);
+        flush();
+        this.out = null;
+    }
+
+    /**
+     * Appends the characters of an ASCII string.
+     * @param text the text to append
+     */
+    private void append(String text) {
+        int size = text.length();
+        if (length + size > buffer.length) {
+            flush();
+        }
+        for (int k = 0; k < size; k++) {
+            buffer[length++] = (byte) text.charAt(k);
+        }
+    }
+
+    /**
+     * Appends raw bytes.
+     * @param bytes the bytes to append
+     */
+    private void append(byte[] bytes) {
+        if (length + bytes.length > buffer.length) {
+            flush();
+        }
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Appends the decimal digits of a non-negative int.
+     * @param value the value to append
+     */
+    private void appendInt(int value) {
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        if (length + digits > buffer.length) {
+            flush();
+        }
+        for (int k = length + digits - 1; k >= length; k--) {
+            buffer[k] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    /**
+     * Writes whatever is in the buffer to the current stream.
+     */
+    private void flush() {
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+}
@@ -0,0 +1,205 @@
+package cs1302.game;
+
+/**
+ * The {@link cs1302.game.CommandParser} class reads a command line typed by the player.
+ * It scans the characters of the line directly, recognising the command word and
+ * parsing the row and column that follow it, so parsing a command creates no objects.
+ * One parser is reused for every line; the parsed row and column stay available until
+ * the next line is parsed.
+ */
+public class CommandParser {
+
+    /** The line is not a valid command. */
+    public static final int INVALID = 0;
+    /** The help command: h/help. */
+    public static final int HELP = 1;
+    /** The guess command: g/guess row col. */
+    public static final int GUESS = 2;
+    /** The quit command: q/quit. */
+    public static final int QUIT = 3;
+    /** The mark command: m/mark row col. */
+    public static final int MARK = 4;
+    /** The reveal command: r/reveal row col. */
+    public static final int REVEAL = 5;
+    /** The nofog command. */
+    public static final int NOFOG = 6;
+    /** The hint command: hint. */
+    public static final int HINT = 7;
+    /** The odds command. */
+    public static final int ODDS = 8;
+    /** The undo command. */
+    public static final int UNDO = 9;
+    /** The redo command. */
+    public static final int REDO = 10;
+
+    private CharSequence line;
+    private int position;
+    private int row;
+    private int col;
+    private int parsed;
+
+    /**
+     * Parses a command line.
+     * Commands that take a square must be followed by exactly two integers; any other
+     * command ignores whatever follows it.
+     * @param line the line typed by the player
+     * @return the parsed command, or {@link #INVALID} if the line is not a valid command
+     */
+    public int parse(CharSequence line) {
+        this.line = line;
+        this.position = 0;
+        skipWhitespace();
+        int start = position;
+        while (position < line.length() && !Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        int command = lookup(start, position);
+        if (command == GUESS || command == MARK || command == REVEAL) {
+            if (!nextInt()) {
+                return INVALID;
+            }
+            row = parsed;
+            if (!nextInt()) {
+                return INVALID;
+            }
+            col = parsed;
+            skipWhitespace();
+            //a subsequent token makes the command invalid
+            if (position < line.length()) {
+                return INVALID;
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Returns the row given with the last parsed command.
+     * @return the row index
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Returns the column given with the last parsed command.
+     * @return the column index
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Returns the command named by the characters between {@code start} and {@code end}.
+     * @param start the index of the first character of the command word
+     * @param end the index just past the command word
+     * @return the command, or {@link #INVALID} if the word is not a command
+     */
+    private int lookup(int start, int end) {
+        switch (end - start) {
+        case 1:
+            switch (line.charAt(start)) {
+            case 'h':
+                return HELP;
+            case 'g':
+                return GUESS;
+            case 'q':
+                return QUIT;
+            case 'm':
+                return MARK;
+            case 'r':
+                return REVEAL;
+            default:
+                return INVALID;
+            }
+        case 4:
+            if (matches(start, "help")) {
+                return HELP;
+            } else if (matches(start, "quit")) {
+                return QUIT;
+            } else if (matches(start, "mark")) {
+                return MARK;
+            } else if (matches(start, "hint")) {
+                return HINT;
+            } else if (matches(start, "odds")) {
+                return ODDS;
+            } else if (matches(start, "undo")) {
+                return UNDO;
+            } else if (matches(start, "redo")) {
+                return REDO;
+            }
+            return INVALID;
+        case 5:
+            if (matches(start, "guess")) {
+                return GUESS;
+            } else if (matches(start, "nofog")) {
+                return NOFOG;
+            }
+            return INVALID;
+        case 6:
+            return matches(start, "reveal") ? REVEAL : INVALID;
+        default:
+            return INVALID;
+        }
+    }
+
+    /**
+     * Indicates whether or not the line holds {@code word} starting at {@code start}.
+     * @param start the index to compare from
+     * @param word the word to compare against
+     * @return true if the characters match; false otherwise
+     */
+    private boolean matches(int start, String word) {
+        for (int k = 0; k < word.length(); k++) {
+            if (line.charAt(start + k) != word.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the next whitespace separated token as an int into {@code parsed}.
+     * @return true if the token exists and is an int; false otherwise
+     */
+    private boolean nextInt() {
+        skipWhitespace();
+        int length = line.length();
+        if (position >= length) {
+            return false;
+        }
+        boolean negative = false;
+        char c = line.charAt(position);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (position < length && !Character.isWhitespace(c = line.charAt(position))) {
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return false;
+            }
+            digits++;
+            position++;
+        }
+        value = negative ? -value : value;
+        if (digits == 0 || value > Integer.MAX_VALUE) {
+            return false;
+        }
+        parsed = (int) value;
+        return true;
+    }
+
+    /**
+     * Moves {@code position} past any whitespace.
+     */
+    private void skipWhitespace() {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+    }
+}
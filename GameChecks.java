@@ -0,0 +1,785 @@
+package cs1302.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The {@link cs1302.game.GameChecks} class checks, one case at a time, the parts of the
+ * game that random play reaches too rarely to trust: recovering a {@link GameJournal}
+ * or a {@link ScoreStore} after a crash, the squares shared between a board and its
+ * snapshots, the engine's bounded undo history, and bugs that were found once and must
+ * stay fixed.
+ *
+ * <p>A journal is cut at every byte of its last commands and must resume to the last
+ * whole command, and go on from there. A score store is cut short and corrupted and
+ * must keep its whole blocks, changing the file only when opened for writing. Every
+ * check is deterministic, and {@link GameFuzzer#run} runs them all before fuzzing.
+ */
+public class GameChecks {
+
+    private final File directory;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * Creates the checks.
+     * @param directory the directory the checks write their journals and stores in
+     */
+    public GameChecks(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Runs every check and prints the ones that failed.
+     * Exits with status 4 if any failed.
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        File directory = null;
+        List<String> failures;
+        try {
+            directory = Files.createTempDirectory("checks").toFile();
+            failures = new GameChecks(directory).run();
+        } catch (IOException e) {
+            System.err.println("Check Directory Error: " + e.getMessage());
+            failures = null;
+        } finally {
+            deleteAll(directory);
+        }
+        if (failures == null) {
+            System.exit(2);
+        }
+        for (String failure : failures) {
+            System.out.println(failure);
+        }
+        System.out.printf("Checks failed: %d%n", failures.size());
+        if (!failures.isEmpty()) {
+            System.exit(4);
+        }
+    }
+
+    /**
+     * Runs every check.
+     * @return a description of each check that failed
+     */
+    public List<String> run() {
+        failures.clear();
+        try {
+            checkJournalTornTail();
+            checkJournalGarbage();
+            checkJournalCompaction();
+            checkJournalSeed();
+            checkStoreReopen();
+            checkStoreTornBlock();
+            checkStoreChecksum();
+            checkStoreOpening();
+            checkStoreQueries();
+        } catch (IOException e) {
+            failures.add("unexpected " + e);
+        }
+        checkSnapshots();
+        checkHistory();
+        checkSolver();
+        checkGenerator();
+        return new ArrayList<>(failures);
+    }
+
+    /**
+     * Cuts a journal at every byte of its commands, and checks that each cut resumes to
+     * the last whole command before it, and that the resumed journal can be added to.
+     * @throws IOException if a journal cannot be written
+     */
+    private void checkJournalTornTail() throws IOException {
+        File file = new File(directory, "torn.jnl");
+        MinesweeperEngine engine = newEngine(9, 9, 10, 1);
+        engine.useHistory(true);
+        List<int[]> moves = randomCommands(engine.getBoard(), 40, 2);
+        //the journal's length, and the game's state, after each command
+        long[] lengths = new long[moves.size() + 1];
+        List<byte[]> states = new ArrayList<>();
+        int[] rounds = new int[moves.size() + 1];
+        GameJournal journal = new GameJournal(file, engine);
+        journal.flush();
+        lengths[0] = file.length();
+        states.add(states(engine.getBoard()));
+        for (int k = 0; k < moves.size(); k++) {
+            int[] move = moves.get(k);
+            engine.apply(move[0], move[1], move[2]);
+            journal.append(move[0], move[1], move[2]);
+            journal.flush();
+            lengths[k + 1] = file.length();
+            states.add(states(engine.getBoard()));
+            rounds[k + 1] = engine.getRoundsCompleted();
+        }
+        journal.close();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        File cut = new File(directory, "cut.jnl");
+        int whole = 0;
+        for (int length = (int) lengths[0]; length <= bytes.length; length++) {
+            while (whole < moves.size() && lengths[whole + 1] <= length) {
+                whole++;
+            }
+            Files.write(cut.toPath(), Arrays.copyOf(bytes, length));
+            MinesweeperEngine resumed = newEngine(9, 9, 10, 1);
+            resumed.useHistory(true);
+            GameJournal reopened = new GameJournal(cut, resumed);
+            String at = "journal cut at byte " + length + " of " + bytes.length;
+            check(reopened.getCommandsSinceCheckpoint() == whole,
+                at + " replayed " + reopened.getCommandsSinceCheckpoint() + " commands, not "
+                + whole);
+            check(Arrays.equals(states(resumed.getBoard()), states.get(whole)),
+                at + " resumed to the wrong board");
+            check(resumed.getRoundsCompleted() == rounds[whole],
+                at + " resumed to round " + resumed.getRoundsCompleted());
+            check(cut.length() == lengths[whole], at + " was not cut back to a whole command");
+            //a command appended after a torn one must be read back after the whole ones
+            resumed.mark(0, 0);
+            reopened.append(CommandParser.MARK, 0, 0);
+            reopened.close();
+            byte[] expected = states(resumed.getBoard());
+            MinesweeperEngine again = newEngine(9, 9, 10, 1);
+            again.useHistory(true);
+            GameJournal last = new GameJournal(cut, again);
+            check(last.getCommandsSinceCheckpoint() == whole + 1
+                && Arrays.equals(states(again.getBoard()), expected),
+                at + " lost the command appended after resuming");
+            last.delete();
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Checks that bytes after the last command that are not a command are dropped,
+     * leaving the commands before them.
+     * @throws IOException if a journal cannot be written
+     */
+    private void checkJournalGarbage() throws IOException {
+        File file = new File(directory, "garbage.jnl");
+        MinesweeperEngine engine = newEngine(9, 9, 10, 3);
+        GameJournal journal = new GameJournal(file, engine);
+        for (int[] move : randomCommands(engine.getBoard(), 20, 4)) {
+            engine.apply(move[0], move[1], move[2]);
+            journal.append(move[0], move[1], move[2]);
+        }
+        journal.close();
+        long length = file.length();
+        Files.write(file.toPath(), new byte[] {0x7F, 1, 2, 3, -1, -1},
+            StandardOpenOption.APPEND);
+        MinesweeperEngine resumed = newEngine(9, 9, 10, 3);
+        GameJournal reopened = new GameJournal(file, resumed);
+        check(reopened.getCommandsSinceCheckpoint() == 20
+            && Arrays.equals(states(resumed.getBoard()), states(engine.getBoard())),
+            "journal with garbage after its commands resumed to the wrong board");
+        check(file.length() == length, "journal garbage was not cut off");
+        reopened.delete();
+    }
+
+    /**
+     * Checks that a journal compacted to a checkpoint resumes to the same game, replaying
+     * only the commands after the checkpoint.
+     * @throws IOException if a journal cannot be written
+     */
+    private void checkJournalCompaction() throws IOException {
+        File file = new File(directory, "compact.jnl");
+        MinesweeperEngine engine = newEngine(80, 80, 600, 5);
+        int extra = 7;
+        GameJournal journal = new GameJournal(file, engine);
+        for (int[] move : randomCommands(engine.getBoard(), GameJournal.COMPACT_AFTER + extra,
+            6)) {
+            engine.apply(move[0], move[1], move[2]);
+            journal.append(move[0], move[1], move[2]);
+        }
+        check(journal.getCommandsSinceCheckpoint() == extra,
+            "journal was not compacted after " + GameJournal.COMPACT_AFTER + " commands");
+        journal.close();
+        MinesweeperEngine resumed = newEngine(80, 80, 600, 5);
+        GameJournal reopened = new GameJournal(file, resumed);
+        check(reopened.getCommandsSinceCheckpoint() == extra,
+            "compacted journal replayed " + reopened.getCommandsSinceCheckpoint()
+            + " commands, not " + extra);
+        check(Arrays.equals(states(resumed.getBoard()), states(engine.getBoard()))
+            && resumed.getRoundsCompleted() == engine.getRoundsCompleted()
+            && resumed.getStatus() == engine.getStatus(),
+            "compacted journal resumed to a different game");
+        reopened.delete();
+    }
+
+    /**
+     * Checks that a journal is refused by a game on another seed, and left as it was.
+     * @throws IOException if a journal cannot be written
+     */
+    private void checkJournalSeed() throws IOException {
+        File file = new File(directory, "seed.jnl");
+        MinesweeperEngine engine = newEngine(9, 9, 10, 7);
+        GameJournal journal = new GameJournal(file, engine);
+        engine.mark(1, 1);
+        journal.append(CommandParser.MARK, 1, 1);
+        journal.close();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        try {
+            new GameJournal(file, newEngine(9, 9, 10, 8)).delete();
+            failures.add("journal was resumed on another seed");
+        } catch (IOException e) {
+            check(Arrays.equals(Files.readAllBytes(file.toPath()), bytes),
+                "journal refused for another seed was changed");
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Checks that more than a block of results is read back whole, read-only or not.
+     * @throws IOException if a store cannot be written
+     */
+    private void checkStoreReopen() throws IOException {
+        File file = new File(directory, "reopen.bin");
+        int count = ScoreStore.BLOCK_SIZE + 10;
+        try (ScoreStore store = new ScoreStore(file)) {
+            for (int i = 0; i < count; i++) {
+                store.record(i, 9, 9, 40 + i % 50, i % 3 == 0 ? MinesweeperEngine.LOST
+                    : MinesweeperEngine.WON, i);
+            }
+        }
+        for (boolean readOnly : new boolean[] {true, false}) {
+            try (ScoreStore store = new ScoreStore(file, readOnly)) {
+                boolean same = store.size() == count;
+                for (int i = 0; same && i < count; i++) {
+                    same = store.getSeed(i) == i && store.getRounds(i) == 40 + i % 50
+                        && store.getMillis(i) == i && store.getStatus(i)
+                        == (i % 3 == 0 ? MinesweeperEngine.LOST : MinesweeperEngine.WON);
+                }
+                check(same, "score store reopened " + (readOnly ? "read-only" : "for writing")
+                    + " holds different results");
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Checks that a block cut short by a crash is left alone by a reader, and cut off by
+     * a writer so the results it records next follow the whole blocks.
+     * @throws IOException if a store cannot be written
+     */
+    private void checkStoreTornBlock() throws IOException {
+        File file = new File(directory, "torn.bin");
+        try (ScoreStore store = new ScoreStore(file)) {
+            for (int i = 0; i < 10; i++) {
+                store.record(i, 9, 9, 50, MinesweeperEngine.WON, 100);
+            }
+        }
+        long whole = file.length();
+        //the header of a block of five results, and only part of the first of them
+        Files.write(file.toPath(), new byte[] {0, 0, 0, 5, 1, 2, 3, 4, 9, 9, 9},
+            StandardOpenOption.APPEND);
+        long torn = file.length();
+        try (ScoreStore store = new ScoreStore(file, true)) {
+            check(store.size() == 10, "read-only store read " + store.size()
+                + " results of a torn file, not 10");
+        }
+        check(file.length() == torn, "read-only store changed a torn file");
+        try (ScoreStore store = new ScoreStore(file)) {
+            check(store.size() == 10, "writer read " + store.size()
+                + " results of a torn file, not 10");
+            check(file.length() == whole, "writer did not cut off a torn block");
+            store.record(10, 9, 9, 60, MinesweeperEngine.WON, 100);
+        }
+        try (ScoreStore store = new ScoreStore(file, true)) {
+            check(store.size() == 11 && store.getSeed(10) == 10,
+                "result recorded after a torn block was lost");
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Checks that a block whose checksum does not match is dropped with every block after
+     * it, and the blocks before it kept.
+     * @throws IOException if a store cannot be written
+     */
+    private void checkStoreChecksum() throws IOException {
+        File file = new File(directory, "crc.bin");
+        try (ScoreStore store = new ScoreStore(file)) {
+            for (int i = 0; i < 10; i++) {
+                store.record(i, 9, 9, 50, MinesweeperEngine.WON, 100);
+            }
+            store.flush();
+            for (int i = 10; i < 15; i++) {
+                store.record(i, 9, 9, 50, MinesweeperEngine.WON, 100);
+            }
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(raw.length() - 1);
+            int last = raw.read();
+            raw.seek(raw.length() - 1);
+            raw.write(last ^ 0x01);
+        }
+        try (ScoreStore store = new ScoreStore(file, true)) {
+            check(store.size() == 10, "store with a corrupt block read " + store.size()
+                + " results, not 10");
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Checks the ways a store can refuse to open: a missing file read-only, which must
+     * not be created, a file too short to be a store, which must not be wiped, and a file
+     * already open for writing.
+     * @throws IOException if a store cannot be written
+     */
+    private void checkStoreOpening() throws IOException {
+        File missing = new File(directory, "missing.bin");
+        try {
+            new ScoreStore(missing, true).close();
+            failures.add("read-only store opened a missing file");
+        } catch (IOException e) {
+            check(!missing.exists(), "read-only store created a missing file");
+        }
+        File tooShort = new File(directory, "short.bin");
+        Files.write(tooShort.toPath(), new byte[] {'M', 'S'});
+        for (boolean readOnly : new boolean[] {true, false}) {
+            try {
+                new ScoreStore(tooShort, readOnly).close();
+                failures.add("store opened a file too short to be one");
+            } catch (IOException e) {
+                check(tooShort.length() == 2, "store wiped a file too short to be one");
+            }
+        }
+        Files.deleteIfExists(tooShort.toPath());
+        File file = new File(directory, "locked.bin");
+        try (ScoreStore writer = new ScoreStore(file)) {
+            writer.record(1, 9, 9, 1, MinesweeperEngine.WON, 1);
+            try {
+                new ScoreStore(file).close();
+                failures.add("second writer opened a store already open for writing");
+            } catch (IOException e) {
+                //expected: only one writer at a time
+            }
+            try (ScoreStore reader = new ScoreStore(file, true)) {
+                try {
+                    reader.record(1, 9, 9, 1, MinesweeperEngine.WON, 1);
+                    failures.add("read-only store recorded a result");
+                } catch (IllegalStateException e) {
+                    //expected: a read-only store never writes
+                }
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Checks the top results and percentiles of a store against sorting every result.
+     * @throws IOException if a store cannot be written
+     */
+    private void checkStoreQueries() throws IOException {
+        File file = new File(directory, "queries.bin");
+        SplittableRandom random = new SplittableRandom(9);
+        try (ScoreStore store = new ScoreStore(file)) {
+            for (int i = 0; i < 300; i++) {
+                int status = random.nextInt(4) == 0 ? MinesweeperEngine.LOST
+                    : MinesweeperEngine.WON;
+                store.record(random.nextInt(3), 5 + random.nextInt(3), 5 + random.nextInt(3),
+                    1 + random.nextInt(60), status, random.nextInt(5));
+            }
+            long sizeKey = ScoreStore.sizeKey(6, 6);
+            checkTop(store, ScoreStore.ALL, 0, 25);
+            checkTop(store, ScoreStore.BY_SEED, 1, 10);
+            checkTop(store, ScoreStore.BY_SIZE, sizeKey, 300);
+            //the heap is sized by the results in scope, not by k
+            checkTop(store, ScoreStore.ALL, 0, Integer.MAX_VALUE);
+            for (double p : new double[] {0, 10, 50, 90, 100}) {
+                checkPercentile(store, ScoreStore.ALL, 0, p);
+                checkPercentile(store, ScoreStore.BY_SIZE, sizeKey, p);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Checks one top query against sorting every result it covers.
+     * @param store the store
+     * @param scope the scope of the query
+     * @param key the key of the query
+     * @param k the most results asked for
+     */
+    private void checkTop(ScoreStore store, int scope, long key, int k) {
+        List<Integer> won = won(store, scope, key);
+        won.sort((a, b) -> {
+            int byScore = Double.compare(store.getScore(b), store.getScore(a));
+            if (byScore != 0) {
+                return byScore;
+            }
+            int byMillis = Long.compare(store.getMillis(a), store.getMillis(b));
+            return byMillis != 0 ? byMillis : Integer.compare(a, b);
+        });
+        int[] expected = new int[Math.min(k, won.size())];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = won.get(i);
+        }
+        check(Arrays.equals(store.top(scope, key, k), expected),
+            "top " + k + " of scope " + scope + " differs from sorting every result");
+    }
+
+    /**
+     * Checks one percentile query against sorting every score it covers.
+     * @param store the store
+     * @param scope the scope of the query
+     * @param key the key of the query
+     * @param p the percentile
+     */
+    private void checkPercentile(ScoreStore store, int scope, long key, double p) {
+        List<Integer> won = won(store, scope, key);
+        double[] scores = new double[won.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = store.getScore(won.get(i));
+        }
+        Arrays.sort(scores);
+        int rank = (int) Math.ceil(p / 100 * scores.length);
+        double expected = scores[Math.max(rank - 1, 0)];
+        check(Double.compare(store.percentile(scope, key, p), expected) == 0,
+            "percentile " + p + " of scope " + scope + " differs from sorting every score");
+    }
+
+    /**
+     * Returns the results that were won in the scope of a query, found one by one.
+     * @param store the store
+     * @param scope the scope of the query
+     * @param key the key of the query
+     * @return the indices of the results
+     */
+    private static List<Integer> won(ScoreStore store, int scope, long key) {
+        List<Integer> won = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            boolean inScope = scope == ScoreStore.ALL
+                || scope == ScoreStore.BY_SEED && store.getSeed(i) == key
+                || scope == ScoreStore.BY_SIZE
+                && ScoreStore.sizeKey(store.getRows(i), store.getCols(i)) == key;
+            if (inScope && store.getStatus(i) == MinesweeperEngine.WON) {
+                won.add(i);
+            }
+        }
+        return won;
+    }
+
+    /**
+     * Checks that a board spanning several groups of chunks and its snapshots never see
+     * each other's moves, and that restoring a snapshot tells the listeners about exactly
+     * the squares that change.
+     */
+    private void checkSnapshots() {
+        MinesweeperBoard board = newBoard(700, 700, 20_000, 11);
+        BitSet changed = new BitSet();
+        board.addListener(changed::set);
+        SplittableRandom random = new SplittableRandom(12);
+        playRandomly(board, random, 2_000);
+        MinesweeperBoard snapshot = board.snapshot();
+        byte[] saved = states(snapshot);
+        changed.clear();
+        board.restore(snapshot);
+        check(changed.isEmpty(), "restoring an untouched snapshot reported changed squares");
+        for (int round = 0; round < 5; round++) {
+            playRandomly(board, random, 2_000);
+            check(Arrays.equals(states(snapshot), saved),
+                "snapshot changed when its board was played on");
+            byte[] played = states(board);
+            MinesweeperBoard other = snapshot.snapshot();
+            playRandomly(other, random, 500);
+            check(Arrays.equals(states(board), played),
+                "board changed when a snapshot was played on");
+            check(Arrays.equals(states(snapshot), saved),
+                "snapshot changed when its own snapshot was played on");
+            changed.clear();
+            board.restore(snapshot);
+            BitSet differs = new BitSet();
+            byte[] restored = states(board);
+            for (int i = 0; i < played.length; i++) {
+                if (played[i] != restored[i]) {
+                    differs.set(i);
+                }
+            }
+            check(Arrays.equals(restored, saved), "restore did not return to the snapshot");
+            check(changed.equals(differs),
+                "restore reported " + changed.cardinality() + " changed squares, not "
+                + differs.cardinality());
+            check(board.getFlagCount() == snapshot.getFlagCount()
+                && board.getRevealedCount() == snapshot.getRevealedCount()
+                && board.getGuessCount() == snapshot.getGuessCount()
+                && board.getHiddenSafeCount() == snapshot.getHiddenSafeCount(),
+                "restore did not return the running totals to the snapshot's");
+        }
+    }
+
+    /**
+     * Checks that undo and redo walk back and forth through a history that forgets moves
+     * past its limit, and that a fork and its engine never see each other's moves.
+     */
+    private void checkHistory() {
+        int limit = 3;
+        MinesweeperEngine engine = newEngine(9, 9, 10, 13);
+        engine.useHistory(true);
+        engine.setHistoryLimit(limit);
+        List<byte[]> before = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            before.add(states(engine.getBoard()));
+            engine.mark(i, i);
+        }
+        byte[] last = states(engine.getBoard());
+        for (int i = 0; i < limit; i++) {
+            check(engine.undo(), "undo " + (i + 1) + " of " + limit + " found no move");
+            check(Arrays.equals(states(engine.getBoard()), before.get(5 - i)),
+                "undo " + (i + 1) + " returned to the wrong board");
+        }
+        check(!engine.undo(), "undo went past the history limit of " + limit);
+        for (int i = 0; i < limit; i++) {
+            check(engine.redo(), "redo " + (i + 1) + " of " + limit + " found no move");
+        }
+        check(!engine.redo() && Arrays.equals(states(engine.getBoard()), last),
+            "redo did not return to the last move");
+        engine.undo();
+        engine.mark(8, 0);
+        check(!engine.redo(), "a new move did not forget the moves undone before it");
+
+        byte[] original = states(engine.getBoard());
+        MinesweeperEngine fork = engine.fork();
+        check(!fork.undo(), "fork started with its engine's history");
+        fork.mark(8, 8);
+        fork.guess(0, 8);
+        check(Arrays.equals(states(engine.getBoard()), original),
+            "engine changed when its fork was played on");
+        byte[] forked = states(fork.getBoard());
+        engine.guess(4, 0);
+        engine.undo();
+        engine.undo();
+        check(Arrays.equals(states(fork.getBoard()), forked),
+            "fork changed when its engine was played on");
+    }
+
+    /**
+     * Checks the solver on games that once made it fail: a square hidden again after it
+     * was queued, which overran its neighbour array, and a wrong flag, which it trusted
+     * and so called a mine safe.
+     */
+    private void checkSolver() {
+        MinesweeperEngine engine = newEngine(6, 6, new int[] {1, 1, 5, 5});
+        MinesweeperSolver solver = new MinesweeperSolver(engine);
+        try {
+            solver.findMove();
+            engine.reveal(2, 2);
+            engine.guess(2, 2);
+            solver.findMove();
+        } catch (RuntimeException e) {
+            failures.add("solver failed after a revealed square was guessed: " + e);
+        }
+
+        engine = newEngine(5, 5, new int[] {1, 1, 4, 4});
+        solver = new MinesweeperSolver(engine);
+        engine.reveal(0, 0);
+        engine.mark(0, 1);
+        for (int step = 0; step < 25 && engine.getStatus() == MinesweeperEngine.PLAYING;
+            step++) {
+            int move = solver.findMove();
+            if (move == CommandParser.INVALID || solver.isMoveGuess()) {
+                break;
+            }
+            int row = solver.getMoveRow();
+            int col = solver.getMoveCol();
+            boolean mine = engine.getBoard().isMine(row, col);
+            check(mine == (move == CommandParser.MARK), "solver deduced that (" + row + ", "
+                + col + ") is " + (mine ? "safe" : "a mine") + " from a wrong flag");
+            engine.apply(move, row, col);
+        }
+    }
+
+    /**
+     * Checks that each board of a run of generated boards depends only on its own
+     * random number generator, so any one of them can be made again alone.
+     */
+    private void checkGenerator() {
+        for (boolean noGuess : new boolean[] {false, true}) {
+            SeedGenerator all = newGenerator(noGuess);
+            SplittableRandom master = new SplittableRandom(14);
+            SplittableRandom again = new SplittableRandom(14);
+            MinesweeperBoard board = null;
+            for (int i = 0; i < 12; i++) {
+                board = all.generate(master.split(), board);
+                SplittableRandom copy = again.split();
+                byte[] mines = mines(board);
+                MinesweeperBoard alone = newGenerator(noGuess).generate(copy, null);
+                check(Arrays.equals(mines(alone), mines), "board " + i + " generated "
+                    + (noGuess ? "without guessing " : "") + "depends on the boards before it");
+            }
+        }
+    }
+
+    /**
+     * Returns the generator of the boards checked by {@link #checkGenerator}.
+     * @param noGuess true if the boards must be solvable without guessing
+     * @return the generator
+     */
+    private static SeedGenerator newGenerator(boolean noGuess) {
+        SeedGenerator generator = new SeedGenerator(12, 12, 20);
+        if (noGuess) {
+            generator.setFirstClick(5, 5);
+            generator.setNoGuess(true);
+        }
+        return generator;
+    }
+
+    /**
+     * Records a failure unless a condition holds.
+     * @param ok the condition
+     * @param what what failed
+     */
+    private void check(boolean ok, String what) {
+        if (!ok) {
+            failures.add(what);
+        }
+    }
+
+    /**
+     * Returns a board with mines placed at random, always the same for the same seed.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param mines the number of mines to try to place
+     * @param seed the seed of the random number generator
+     * @return the board
+     */
+    private static MinesweeperBoard newBoard(int rows, int cols, int mines, long seed) {
+        MinesweeperBoard board = new MinesweeperBoard(rows, cols);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < mines; i++) {
+            board.placeMine(random.nextInt(rows), random.nextInt(cols));
+        }
+        board.computeAdjacency();
+        return board;
+    }
+
+    /**
+     * Returns an engine for a new game on a board made by {@link #newBoard}.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param mines the number of mines to try to place
+     * @param seed the seed of the random number generator
+     * @return the engine
+     */
+    private static MinesweeperEngine newEngine(int rows, int cols, int mines, long seed) {
+        return new MinesweeperEngine(newBoard(rows, cols, mines, seed));
+    }
+
+    /**
+     * Returns an engine for a new game with mines on the given squares.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param mines the row and column of each mine, one after the other
+     * @return the engine
+     */
+    private static MinesweeperEngine newEngine(int rows, int cols, int[] mines) {
+        MinesweeperBoard board = new MinesweeperBoard(rows, cols);
+        for (int i = 0; i < mines.length; i += 2) {
+            board.placeMine(mines[i], mines[i + 1]);
+        }
+        board.computeAdjacency();
+        return new MinesweeperEngine(board);
+    }
+
+    /**
+     * Returns commands that change a game without ending it: marks, guesses, reveals of
+     * squares that are not mines, and undo and redo.
+     * @param board the board the commands are for
+     * @param count the number of commands
+     * @param seed the seed of the random number generator
+     * @return the command, row and column of each command
+     */
+    private static List<int[]> randomCommands(MinesweeperBoard board, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<int[]> commands = new ArrayList<>();
+        int[] moves = {CommandParser.MARK, CommandParser.GUESS, CommandParser.REVEAL};
+        while (commands.size() < count) {
+            int row = random.nextInt(board.getRows());
+            int col = random.nextInt(board.getCols());
+            int kind = random.nextInt(8);
+            if (kind == 0) {
+                commands.add(new int[] {CommandParser.UNDO, 0, 0});
+            } else if (kind == 1) {
+                commands.add(new int[] {CommandParser.REDO, 0, 0});
+            } else if (moves[kind % 3] != CommandParser.REVEAL || !board.isMine(row, col)) {
+                commands.add(new int[] {moves[kind % 3], row, col});
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Marks, guesses and reveals squares of a board at random, never revealing a mine.
+     * @param board the board
+     * @param random the random number generator
+     * @param moves the number of moves
+     */
+    private static void playRandomly(MinesweeperBoard board, SplittableRandom random,
+        int moves) {
+        for (int i = 0; i < moves; i++) {
+            int row = random.nextInt(board.getRows());
+            int col = random.nextInt(board.getCols());
+            int kind = random.nextInt(3);
+            if (kind == 0) {
+                board.mark(row, col);
+            } else if (kind == 1) {
+                board.guess(row, col);
+            } else if (!board.isMine(row, col)) {
+                board.revealArea(row, col);
+            }
+        }
+    }
+
+    /**
+     * Returns whether each square of a board is revealed, flagged or guessed.
+     * @param board the board
+     * @return the state bits of every square
+     */
+    private static byte[] states(MinesweeperBoard board) {
+        int rows = board.getRows();
+        int cols = board.getCols();
+        byte[] states = new byte[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                states[row * cols + col] = (byte) (board.get(row, col)
+                    & MinesweeperBoard.STATE_MASK);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Returns which squares of a board are mines.
+     * @param board the board
+     * @return one byte per square, 1 for a mine
+     */
+    private static byte[] mines(MinesweeperBoard board) {
+        byte[] mines = new byte[board.getRows() * board.getCols()];
+        for (int index = board.nextMine(0); index >= 0; index = board.nextMine(index + 1)) {
+            mines[index] = 1;
+        }
+        return mines;
+    }
+
+    /**
+     * Deletes a directory of check files.
+     * @param directory the directory, or null
+     */
+    private static void deleteAll(File directory) {
+        if (directory == null) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,829 @@
+package cs1302.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link cs1302.game.GameFuzzer} class stress tests the game with games made up at
+ * random, on every core at once, and checks every one against a model of the rules kept
+ * apart from the engine. It reports games per second, the latency of commands and games,
+ * and every divergence from the model.
+ *
+ * <p>Most games generate a board, then play random command lines, with whitespace,
+ * broken moves, squares off the board and garbage mixed in, and moves found by a
+ * {@link MinesweeperSolver}. After every command the parsed command is checked against
+ * a simple reference parser, the rounds and the status against the model, and the board
+ * after an undo or redo against a copy of the state it returns to. A game is won exactly
+ * when every mine is flagged and every other square revealed, and its score must follow
+ * {@link MinesweeperEngine#score}. Some games are also played through a
+ * {@link MinesweeperGame}, the way {@code promptUser} plays them, and must end the same.
+ *
+ * <p>The other games write a seed file, valid or malformed in one of many ways, sizes
+ * below {@link SeedLoader#MIN_SIZE} included, and load it. A malformed seed must be
+ * rejected with the {@link InputMismatchException} that the game's constructor turns
+ * into exit code 3, and a valid one must load the mines it lists.
+ *
+ * <p>Game {@code i} is drawn from its own random number generator seeded from the master
+ * seed and {@code i}, so a run is reproducible whatever the number of threads, its
+ * checksum included, and any one game can be played again alone with {@code --game}.
+ * A run starts with the {@link GameChecks}, which cover crash recovery and the sharing
+ * of snapshots case by case.
+ */
+public class GameFuzzer {
+
+    /** The master seed used when none is given. */
+    public static final long DEFAULT_SEED = 1302;
+
+    /** The most commands played in one game before it is cut off. */
+    public static final int MAX_COMMANDS = 400;
+
+    private static final int GAMES_PER_TASK = 64;
+    //one game in this many fuzzes a seed file instead of playing
+    private static final int SEED_FILE_EVERY = 8;
+    //one game in this many is also played through MinesweeperGame
+    private static final int FULL_GAME_EVERY = 16;
+    //one game in this many is played on a large board spanning many chunks
+    private static final int LARGE_BOARD_EVERY = 256;
+    private static final int MAX_REPORTED = 20;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final String[] MOVE_WORDS = {"r", "reveal", "m", "mark", "g", "guess"};
+    private static final String[] OTHER_WORDS = {"h", "help", "nofog", "hint", "odds",
+        "undo", "redo"};
+    private static final String GARBAGE = "abcdefghijklmnopqrstuvwxyz0123456789-+ \t.";
+    private static final Map<String, Integer> REFERENCE_WORDS = new HashMap<>();
+
+    static {
+        String[] words = {"h", "help", "g", "guess", "q", "quit", "m", "mark", "r", "reveal",
+            "nofog", "hint", "odds", "undo", "redo"};
+        int[] commands = {CommandParser.HELP, CommandParser.HELP, CommandParser.GUESS,
+            CommandParser.GUESS, CommandParser.QUIT, CommandParser.QUIT, CommandParser.MARK,
+            CommandParser.MARK, CommandParser.REVEAL, CommandParser.REVEAL,
+            CommandParser.NOFOG, CommandParser.HINT, CommandParser.ODDS, CommandParser.UNDO,
+            CommandParser.REDO};
+        for (int i = 0; i < words.length; i++) {
+            REFERENCE_WORDS.put(words[i], commands[i]);
+        }
+    }
+
+    private final long masterSeed;
+    private final File directory;
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(this::newWorker);
+    private final ConcurrentLinkedQueue<Worker> allWorkers = new ConcurrentLinkedQueue<>();
+    private final LongAdder[] statusCounts = {
+        new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()
+    };
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder seedFiles = new LongAdder();
+    private final LongAdder malformedSeeds = new LongAdder();
+    private final LongAdder fullGames = new LongAdder();
+    private final LongAdder checksum = new LongAdder();
+    private final LongAdder divergenceCount = new LongAdder();
+    private final ConcurrentLinkedQueue<String> divergences = new ConcurrentLinkedQueue<>();
+    private List<String> trace;
+
+    /**
+     * The state each worker thread keeps for itself.
+     */
+    private static class Worker {
+
+        private final File seedFile;
+        private final LatencyHistogram commandLatency = new LatencyHistogram();
+        private final LatencyHistogram gameLatency = new LatencyHistogram();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Creates the state of a worker.
+         * @param seedFile the file the worker writes its fuzzed seeds to
+         */
+        Worker(File seedFile) {
+            this.seedFile = seedFile;
+        }
+    }
+
+    /**
+     * Creates a fuzzer.
+     * @param masterSeed the seed every game is drawn from
+     * @param directory the directory the workers write their seed files in
+     */
+    public GameFuzzer(long masterSeed, File directory) {
+        this.masterSeed = masterSeed;
+        this.directory = directory;
+    }
+
+    /**
+     * Fuzzes as many games as the first argument asks for on as many threads as the
+     * second asks for, or one per core, from the master seed given third. With
+     * {@code --game INDEX}, plays only that game and prints every command of it.
+     * Exits with status 4 if any check failed or game diverged from the model.
+     * @param args contains the number of games, the thread count and the master seed
+     */
+    public static void main(String[] args) {
+        String usage = "Usage: GameFuzzer GAMES [THREADS] [MASTER_SEED]\n"
+            + "       GameFuzzer --game INDEX [MASTER_SEED]";
+        if (args.length < 1 || args.length > 3) {
+            System.err.println(usage);
+            System.exit(1);
+        }
+        boolean one = args[0].equals("--game");
+        long masterSeed = DEFAULT_SEED;
+        long count = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            count = Long.parseLong(one && args.length > 1 ? args[1] : args[0]);
+            if (args.length > 1 && !one) {
+                threads = Integer.parseInt(args[1]);
+            }
+            if (args.length == 3) {
+                masterSeed = Long.parseLong(args[2]);
+            }
+        } catch (NumberFormatException e) {
+            count = -1;
+        }
+        if (count < 0 || threads <= 0 || (one && args.length < 2)) {
+            System.err.println(usage);
+            System.exit(1);
+        }
+        File directory = null;
+        boolean clean;
+        try {
+            directory = Files.createTempDirectory("fuzz").toFile();
+            GameFuzzer fuzzer = new GameFuzzer(masterSeed, directory);
+            clean = one ? fuzzer.replay(count) : fuzzer.run(count, threads);
+        } catch (IOException e) {
+            System.err.println("Fuzz Directory Error: " + e.getMessage());
+            clean = false;
+        } finally {
+            deleteAll(directory);
+        }
+        if (!clean) {
+            System.exit(directory == null ? 2 : 4);
+        }
+    }
+
+    /**
+     * Runs the {@link GameChecks}, then fuzzes games {@code 0} to {@code games - 1} on a
+     * pool of threads and prints the totals.
+     * @param games the number of games
+     * @param threads the number of worker threads
+     * @return true if every check passed and no game diverged from the model; false
+     *     otherwise
+     */
+    public boolean run(long games, int threads) {
+        List<String> failures = new GameChecks(directory).run();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new Games(0, games));
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        LatencyHistogram commandLatency = new LatencyHistogram();
+        LatencyHistogram gameLatency = new LatencyHistogram();
+        for (Worker worker : allWorkers) {
+            commandLatency.add(worker.commandLatency);
+            gameLatency.add(worker.gameLatency);
+        }
+        System.out.printf("Fuzzed %d games from seed %d on %d threads in %.3f s"
+            + " (%.1f games/sec, %.1f commands/sec)%n", games, masterSeed, threads, seconds,
+            games / Math.max(seconds, 1e-9), commands.sum() / Math.max(seconds, 1e-9));
+        for (int status = 0; status < statusCounts.length; status++) {
+            System.out.printf("  %-10s %d%n", GameResult.statusName(status),
+                statusCounts[status].sum());
+        }
+        System.out.printf("  Seed files: %d (%d malformed), full games: %d, commands: %d%n",
+            seedFiles.sum(), malformedSeeds.sum(), fullGames.sum(), commands.sum());
+        printLatency("Command", commandLatency);
+        printLatency("Game", gameLatency);
+        System.out.printf("  Checksum: %016x%n", checksum.sum());
+        System.out.printf("  Divergences: %d%n", divergenceCount.sum());
+        for (String divergence : divergences) {
+            System.out.println("    " + divergence);
+        }
+        System.out.printf("  Failed checks: %d%n", failures.size());
+        for (String failure : failures) {
+            System.out.println("    " + failure);
+        }
+        return divergenceCount.sum() == 0 && failures.isEmpty();
+    }
+
+    /**
+     * Plays one game alone, printing every command and what it led to.
+     * @param index the index of the game
+     * @return true if the game did not diverge from the model; false otherwise
+     */
+    public boolean replay(long index) {
+        trace = new ArrayList<>();
+        fuzz(index);
+        for (String line : trace) {
+            System.out.println(line);
+        }
+        for (String divergence : divergences) {
+            System.out.println(divergence);
+        }
+        return divergenceCount.sum() == 0;
+    }
+
+    /**
+     * Prints the percentiles of a latency histogram in microseconds.
+     * @param name what the latencies are of
+     * @param histogram the histogram
+     */
+    private static void printLatency(String name, LatencyHistogram histogram) {
+        System.out.printf("  %s latency (us): p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+            name, histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3,
+            histogram.getPercentile(99.9) / 1e3, histogram.getMax() / 1e3);
+    }
+
+    /**
+     * Creates the state of the calling worker thread.
+     * @return the new worker
+     */
+    private Worker newWorker() {
+        Worker worker = new Worker(new File(directory,
+            "seed-" + Thread.currentThread().getId() + BatchReplay.SEED_EXTENSION));
+        allWorkers.add(worker);
+        return worker;
+    }
+
+    /**
+     * Fuzzes one game on the calling thread, counting any exception it throws as a
+     * divergence.
+     * @param index the index of the game
+     */
+    private void fuzz(long index) {
+        Worker worker = workers.get();
+        SplittableRandom random = new SplittableRandom(masterSeed + index * GOLDEN);
+        long start = System.nanoTime();
+        try {
+            if (random.nextInt(SEED_FILE_EVERY) == 0) {
+                fuzzSeed(worker, index, random);
+            } else {
+                play(worker, index, random);
+            }
+        } catch (IOException | RuntimeException e) {
+            StackTraceElement[] stack = e.getStackTrace();
+            diverge(index, "threw " + e + (stack.length > 0 ? " at " + stack[0] : ""));
+        }
+        worker.gameLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Plays one game of random and solver-guided commands, checking it against the model
+     * after every command.
+     * @param worker the calling thread's worker
+     * @param index the index of the game
+     * @param random the random number generator of the game
+     */
+    private void play(Worker worker, long index, SplittableRandom random) {
+        boolean large = random.nextInt(LARGE_BOARD_EVERY) == 0;
+        int rows = SeedLoader.MIN_SIZE + random.nextInt(large ? 300 : 26);
+        int cols = SeedLoader.MIN_SIZE + random.nextInt(large ? 300 : 26);
+        int squares = rows * cols;
+        int mines = random.nextInt(8) == 0 ? random.nextInt(squares + 1)
+            : random.nextInt(squares * 2 / 5 + 1);
+        MinesweeperBoard board = new SeedGenerator(rows, cols, mines).generate(random.split(),
+            null);
+        //a short history now and then, so moves fall off the end of it
+        int historyLimit = random.nextInt(4) == 0 ? 1 + random.nextInt(8)
+            : MinesweeperEngine.DEFAULT_HISTORY_LIMIT;
+        boolean full = random.nextInt(FULL_GAME_EVERY) == 0;
+        MinesweeperGame game = null;
+        if (full) {
+            PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+            game = new MinesweeperGame(board.snapshot(), nowhere, nowhere);
+            game.useHistory(historyLimit);
+            game.start();
+            fullGames.increment();
+        }
+        MinesweeperEngine engine = new MinesweeperEngine(board);
+        engine.useHistory(true);
+        engine.setHistoryLimit(historyLimit);
+        MinesweeperSolver solver = random.nextBoolean() ? new MinesweeperSolver(engine) : null;
+        int solverShare = random.nextInt(101);
+        int expectedRounds = 0;
+        ArrayDeque<byte[]> undoStates = new ArrayDeque<>();
+        ArrayDeque<byte[]> redoStates = new ArrayDeque<>();
+        int played = 0;
+        while (engine.getStatus() == MinesweeperEngine.PLAYING && played < MAX_COMMANDS) {
+            String line = null;
+            if (solver != null && random.nextInt(100) < solverShare) {
+                int move = solver.findMove();
+                if (move == CommandParser.MARK || move == CommandParser.REVEAL) {
+                    line = (move == CommandParser.MARK ? "m " : "r ") + solver.getMoveRow()
+                        + " " + solver.getMoveCol();
+                }
+            }
+            //odds may search for half a second on a full game, so full games skip it
+            while (line == null || (full && reference(line)[0] == CommandParser.ODDS)) {
+                line = randomLine(random, rows, cols);
+            }
+            int[] expected = reference(line);
+            int command = expected[0];
+            boolean inBounds = expected[1] >= 0 && expected[1] < rows && expected[2] >= 0
+                && expected[2] < cols;
+            boolean move = command == CommandParser.REVEAL || command == CommandParser.MARK
+                || command == CommandParser.GUESS;
+            boolean hitsMine = command == CommandParser.REVEAL && inBounds
+                && board.isMine(expected[1], expected[2]);
+            boolean travels = command == CommandParser.UNDO || command == CommandParser.REDO;
+            byte[] before = (move && inBounds) || travels ? states(board) : null;
+
+            long start = System.nanoTime();
+            int parsed = engine.apply(line);
+            worker.commandLatency.record(System.nanoTime() - start);
+            played++;
+            if (trace != null) {
+                trace.add(String.format("%-24s -> %s, %d rounds", "\"" + line + "\"",
+                    GameResult.statusName(engine.getStatus()), engine.getRoundsCompleted()));
+            }
+
+            if (parsed != command) {
+                diverge(index, "\"" + line + "\" parsed as " + parsed + ", not " + command);
+                break;
+            }
+            byte[] returnTo = null;
+            if (move && inBounds) {
+                push(undoStates, before, historyLimit);
+                redoStates.clear();
+                expectedRounds++;
+            } else if (command == CommandParser.UNDO && !undoStates.isEmpty()) {
+                returnTo = undoStates.pop();
+                push(redoStates, before, historyLimit);
+                expectedRounds++;
+            } else if (command == CommandParser.REDO && !redoStates.isEmpty()) {
+                returnTo = redoStates.pop();
+                push(undoStates, before, historyLimit);
+                expectedRounds++;
+            } else if (command == CommandParser.HELP || command == CommandParser.NOFOG
+                || command == CommandParser.HINT || command == CommandParser.ODDS) {
+                expectedRounds++;
+            }
+            //the model is checked against the board after the command
+            if (returnTo != null && !Arrays.equals(returnTo, states(board))) {
+                diverge(index, "\"" + line + "\" did not restore the board");
+                break;
+            }
+            if (engine.getRoundsCompleted() != expectedRounds) {
+                diverge(index, "\"" + line + "\" left " + engine.getRoundsCompleted()
+                    + " rounds, not " + expectedRounds);
+                break;
+            }
+            int expectedStatus = MinesweeperEngine.PLAYING;
+            if (command == CommandParser.QUIT) {
+                expectedStatus = MinesweeperEngine.QUIT;
+            } else if (hitsMine) {
+                expectedStatus = MinesweeperEngine.LOST;
+            } else if (isSolved(board)) {
+                expectedStatus = MinesweeperEngine.WON;
+            }
+            if (engine.getStatus() != expectedStatus) {
+                diverge(index, "\"" + line + "\" left the game "
+                    + GameResult.statusName(engine.getStatus()) + ", not "
+                    + GameResult.statusName(expectedStatus));
+                break;
+            }
+            if (game != null && game.play(line)
+                != (engine.getStatus() == MinesweeperEngine.PLAYING)) {
+                diverge(index, "\"" + line + "\" ended only one of the game and the engine");
+                break;
+            }
+        }
+        int status = engine.getStatus();
+        if (game != null && game.isWon() != (status == MinesweeperEngine.WON)) {
+            diverge(index, "the game and the engine disagree on the win");
+        }
+        if (status == MinesweeperEngine.WON) {
+            double score = (double) rows * cols * 100.0 / engine.getRoundsCompleted();
+            if (engine.score() != score || engine.result(false).getScore() != score) {
+                diverge(index, "scored " + engine.score() + ", not " + score);
+            }
+        }
+        statusCounts[status].increment();
+        commands.add(played);
+        checksum.add(mix(index, status, engine.getRoundsCompleted(),
+            board.getRevealedCount()));
+    }
+
+    /**
+     * Writes a seed file, valid or malformed in one of many ways, and checks that it is
+     * loaded or rejected as it should be.
+     * @param worker the calling thread's worker
+     * @param index the index of the game
+     * @param random the random number generator of the game
+     * @throws IOException if the seed file cannot be written or read
+     */
+    private void fuzzSeed(Worker worker, long index, SplittableRandom random)
+        throws IOException {
+        seedFiles.increment();
+        int kind = random.nextInt(12);
+        boolean large = kind == 1;
+        int rows = SeedLoader.MIN_SIZE + random.nextInt(large ? 4 : 36);
+        int cols = large ? 100_000 + random.nextInt(300_000) : SeedLoader.MIN_SIZE
+            + random.nextInt(36);
+        int squares = rows * cols;
+        int declared = random.nextInt(Math.min(squares, 200) + 1);
+        int[] mines = new int[declared];
+        for (int i = 0; i < declared; i++) {
+            mines[i] = random.nextInt(squares);
+        }
+        boolean malformed = true;
+        String text = null;
+        byte[] binary = null;
+        switch (kind) {
+        case 0:
+        case 1:
+            malformed = false;
+            text = seedText(rows, cols, declared, mines, cols);
+            break;
+        case 2:
+            //a seed may stop after its size, or list fewer mines than it declares
+            malformed = false;
+            if (random.nextBoolean()) {
+                text = rows + " " + cols + "\n";
+                mines = new int[0];
+            } else {
+                mines = Arrays.copyOf(mines, random.nextInt(declared + 1));
+                text = seedText(rows, cols, declared, mines, cols);
+            }
+            break;
+        case 3:
+            text = seedText(random.nextInt(SeedLoader.MIN_SIZE + 3) - 3, cols, 0, mines, cols);
+            break;
+        case 4:
+            text = seedText(rows, random.nextInt(SeedLoader.MIN_SIZE + 3) - 3, 0, mines, cols);
+            break;
+        case 5:
+            //past the squares a board can hold
+            text = seedText(65_536 + random.nextInt(1000), 65_536, 0, mines, cols);
+            break;
+        case 6:
+            text = seedText(rows, cols, random.nextBoolean() ? -1 - random.nextInt(10)
+                : squares + 1 + random.nextInt(10), mines, cols);
+            break;
+        case 7:
+            //a mine off the board, listed last
+            text = seedText(rows, cols, declared + 1, mines, cols) + (random.nextBoolean()
+                ? (rows + random.nextInt(5)) + " 0" : "0 " + (cols + random.nextInt(5))) + "\n";
+            break;
+        case 8:
+            //half a pair
+            text = seedText(rows, cols, declared + 1, mines, cols) + random.nextInt(rows) + "\n";
+            break;
+        case 9:
+            text = corruptToken(random, seedText(rows, cols, declared, mines, cols));
+            break;
+        case 10:
+            malformed = false;
+            binary = seedBinary(worker, rows, cols, mines);
+            break;
+        default:
+            if (declared == 0) {
+                mines = new int[] {random.nextInt(squares)};
+            }
+            byte[] whole = seedBinary(worker, rows, cols, mines);
+            binary = Arrays.copyOf(whole, 1 + random.nextInt(whole.length - 1));
+            break;
+        }
+        Files.write(worker.seedFile.toPath(), binary != null ? binary
+            : text.getBytes(StandardCharsets.US_ASCII));
+        if (trace != null) {
+            trace.add((binary != null ? binary.length + " bytes of binary seed"
+                : "seed \"" + text.replace("\n", " ") + "\"") + (malformed ? ", malformed"
+                : ", valid"));
+        }
+        MinesweeperBoard board;
+        try {
+            board = SeedLoader.load(worker.seedFile.getPath());
+        } catch (InputMismatchException e) {
+            malformedSeeds.increment();
+            if (!malformed) {
+                diverge(index, "a valid seed was rejected (kind " + kind + ")");
+            }
+            checksum.add(mix(index, -1, kind, 0));
+            return;
+        }
+        if (malformed) {
+            diverge(index, "a malformed seed was loaded (kind " + kind + ")");
+            return;
+        }
+        BitSet expected = new BitSet(squares);
+        for (int mine : mines) {
+            expected.set(mine);
+        }
+        BitSet loaded = new BitSet(squares);
+        for (int mine = board.nextMine(0); mine >= 0; mine = board.nextMine(mine + 1)) {
+            loaded.set(mine);
+        }
+        if (board.getRows() != rows || board.getCols() != cols || !loaded.equals(expected)) {
+            diverge(index, "a seed loaded other mines than it lists (kind " + kind + ")");
+        }
+        checksum.add(mix(index, -2, kind, board.getMineCount()));
+    }
+
+    /**
+     * Returns the text of a seed file.
+     * @param rows the number of rows written
+     * @param cols the number of columns written
+     * @param declared the number of mines written
+     * @param mines the flat indices of the mines listed
+     * @param width the number of columns the flat indices are of
+     * @return the text
+     */
+    private static String seedText(int rows, int cols, int declared, int[] mines,
+        int width) {
+        StringBuilder text = new StringBuilder();
+        text.append(rows).append(' ').append(cols).append('\n').append(declared).append('\n');
+        for (int mine : mines) {
+            text.append(mine / width).append(' ').append(mine % width).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the bytes of a binary seed file.
+     * @param worker the calling thread's worker
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param mines the flat indices of the mines
+     * @return the bytes
+     * @throws IOException never, as the bytes are kept in memory
+     */
+    private static byte[] seedBinary(Worker worker, int rows, int cols, int[] mines)
+        throws IOException {
+        MinesweeperBoard board = new MinesweeperBoard(rows, cols);
+        for (int mine : mines) {
+            board.placeMine(mine / cols, mine % cols);
+        }
+        worker.bytes.reset();
+        DataOutputStream data = new DataOutputStream(worker.bytes);
+        SeedConverter.write(board, data);
+        data.flush();
+        return worker.bytes.toByteArray();
+    }
+
+    /**
+     * Replaces one of the first few tokens of a seed, which are always read, with one
+     * that is not an int.
+     * @param random the random number generator of the game
+     * @param text the text of a valid seed
+     * @return the corrupted text
+     */
+    private static String corruptToken(SplittableRandom random, String text) {
+        String[] tokens = text.trim().split("\\s+");
+        String[] bad = {"x", "1.5", "--2", "+", "7a", "99999999999"};
+        tokens[random.nextInt(Math.min(tokens.length, 3))] = bad[random.nextInt(bad.length)];
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * Returns a random command line: a move, on or off the board, another command, a
+     * broken move or garbage, with random whitespace.
+     * @param random the random number generator of the game
+     * @param rows the number of rows of the board
+     * @param cols the number of columns of the board
+     * @return the line
+     */
+    private static String randomLine(SplittableRandom random, int rows, int cols) {
+        int kind = random.nextInt(1000);
+        if (kind == 0) {
+            return random.nextBoolean() ? "q" : "quit";
+        }
+        String space = random.nextInt(4) == 0 ? " \t " : " ";
+        String line;
+        if (kind < 500) {
+            line = MOVE_WORDS[random.nextInt(MOVE_WORDS.length)] + space
+                + coordinate(random, rows) + space + coordinate(random, cols);
+        } else if (kind < 650) {
+            line = OTHER_WORDS[random.nextInt(OTHER_WORDS.length)];
+        } else if (kind < 800) {
+            String word = MOVE_WORDS[random.nextInt(MOVE_WORDS.length)];
+            int broken = random.nextInt(3);
+            if (broken == 0) {
+                line = word + space + coordinate(random, rows);
+            } else if (broken == 1) {
+                line = word + " " + random.nextInt(rows) + " " + random.nextInt(cols) + " 1";
+            } else {
+                line = word + " " + random.nextInt(rows) + " " + random.nextInt(cols) + "x";
+            }
+        } else {
+            StringBuilder garbage = new StringBuilder(random.nextBoolean()
+                ? MOVE_WORDS[random.nextInt(MOVE_WORDS.length)] + " 1 2"
+                : OTHER_WORDS[random.nextInt(OTHER_WORDS.length)]);
+            for (int edits = 1 + random.nextInt(3); edits > 0; edits--) {
+                int at = random.nextInt(garbage.length() + 1);
+                char c = GARBAGE.charAt(random.nextInt(GARBAGE.length()));
+                if (random.nextBoolean() || at == garbage.length()) {
+                    garbage.insert(at, c);
+                } else {
+                    garbage.setCharAt(at, c);
+                }
+            }
+            line = garbage.toString();
+        }
+        if (random.nextInt(8) == 0) {
+            line = "  " + line + " ";
+        }
+        return line;
+    }
+
+    /**
+     * Returns a random row or column, usually on the board.
+     * @param random the random number generator of the game
+     * @param size the number of rows or columns
+     * @return the coordinate as text
+     */
+    private static String coordinate(SplittableRandom random, int size) {
+        int kind = random.nextInt(20);
+        if (kind == 0) {
+            return "-1";
+        } else if (kind == 1) {
+            return Integer.toString(size + random.nextInt(3));
+        } else if (kind == 2) {
+            return random.nextBoolean() ? "2147483647" : "-2147483648";
+        } else if (kind == 3) {
+            return "+" + random.nextInt(size);
+        }
+        return Integer.toString(random.nextInt(size));
+    }
+
+    /**
+     * Parses a command line the simple way, as the model's reference for
+     * {@link CommandParser}.
+     * @param line the command line
+     * @return the command, row and column; the row and column are -1 unless the command
+     *     is a move
+     */
+    private static int[] reference(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        Integer command = REFERENCE_WORDS.get(tokens[0]);
+        if (command == null) {
+            return new int[] {CommandParser.INVALID, -1, -1};
+        }
+        if (command != CommandParser.REVEAL && command != CommandParser.MARK
+            && command != CommandParser.GUESS) {
+            return new int[] {command, -1, -1};
+        }
+        try {
+            if (tokens.length == 3) {
+                return new int[] {command, Integer.parseInt(tokens[1]),
+                    Integer.parseInt(tokens[2])};
+            }
+        } catch (NumberFormatException e) {
+            //falls through to invalid
+        }
+        return new int[] {CommandParser.INVALID, -1, -1};
+    }
+
+    /**
+     * Pushes the state of the board before a command onto a stack of the model's history,
+     * forgetting the oldest state past the engine's history limit, like the engine does.
+     * @param states the stack, newest first
+     * @param state the state to push
+     * @param limit the most states kept
+     */
+    private static void push(ArrayDeque<byte[]> states, byte[] state, int limit) {
+        states.push(state);
+        if (states.size() > limit) {
+            states.removeLast();
+        }
+    }
+
+    /**
+     * Returns whether each square of a board is revealed, flagged or guessed.
+     * @param board the board
+     * @return the state bits of every square
+     */
+    private static byte[] states(MinesweeperBoard board) {
+        int rows = board.getRows();
+        int cols = board.getCols();
+        byte[] states = new byte[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                states[row * cols + col] = (byte) (board.get(row, col)
+                    & MinesweeperBoard.STATE_MASK);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Indicates whether or not every mine is flagged and every other square revealed,
+     * looking at each square rather than the board's counters.
+     * @param board the board
+     * @return true if the board is solved; false otherwise
+     */
+    private static boolean isSolved(MinesweeperBoard board) {
+        for (int row = 0; row < board.getRows(); row++) {
+            for (int col = 0; col < board.getCols(); col++) {
+                int cell = board.get(row, col);
+                int needed = (cell & MinesweeperBoard.MINE) != 0 ? MinesweeperBoard.FLAG
+                    : MinesweeperBoard.REVEALED;
+                if ((cell & MinesweeperBoard.STATE_MASK) != needed) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a divergence from the model. Only the first few are kept to be printed.
+     * @param index the index of the game
+     * @param what what diverged
+     */
+    private void diverge(long index, String what) {
+        divergenceCount.increment();
+        if (divergenceCount.sum() <= MAX_REPORTED) {
+            divergences.add("game " + index + ": " + what);
+        }
+    }
+
+    /**
+     * Mixes the outcome of a game into a hash, so the sum of every game's hash checks a
+     * whole run whatever order its games were played in.
+     * @param index the index of the game
+     * @param a one part of the outcome
+     * @param b another part of the outcome
+     * @param c another part of the outcome
+     * @return the hash
+     */
+    private static long mix(long index, long a, long b, long c) {
+        long hash = MinesweeperBoard.hash(index * GOLDEN, a);
+        hash = MinesweeperBoard.hash(MinesweeperBoard.hash(hash, b), c);
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * Deletes a directory of seed files.
+     * @param directory the directory, or null
+     */
+    private static void deleteAll(File directory) {
+        if (directory == null) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * A task fuzzing a range of the games, splitting itself in half until the range is
+     * small enough to fuzz directly.
+     */
+    private class Games extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+
+        /**
+         * Creates a task for the games from {@code from} up to, not including, {@code to}.
+         * @param from the index of the first game
+         * @param to the index just past the last game
+         */
+        Games(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Fuzzes the range, or splits it and fuzzes both halves in parallel.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                for (long index = from; index < to; index++) {
+                    fuzz(index);
+                }
+                return;
+            }
+            long middle = (from + to) >>> 1;
+            invokeAll(new Games(from, middle), new Games(middle, to));
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package cs1302.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link cs1302.game.GameJournal} class saves a game as it is played, so it can be
+ * resumed after the process stops for any reason. Every command that changes the game
+ * is appended to a binary journal file: one byte for the command, and two varints for
+ * the square of a move.
+ *
+ * <p>Commands are gathered in a buffer. A daemon thread writes the buffer out and
+ * forces it to disk every {@value #GROUP_COMMIT_MILLIS} ms, so a whole group of commands
+ * shares one fsync and the player never waits for the disk. A crash loses at most the
+ * commands of that last interval.
+ *
+ * <p>The journal starts with the size and a hash of the mines of the seed, followed by
+ * a checkpoint holding the state of every square as runs. After
+ * {@value #COMPACT_AFTER} commands the file is replaced by a new checkpoint of the game,
+ * so resuming never replays more than that many commands. Moves made before the
+ * checkpoint can no longer be undone, even in the running game, so a resumed game
+ * behaves exactly like the one that was saved.
+ */
+public class GameJournal {
+
+    /** The most time between a command and the fsync that makes it durable. */
+    public static final int GROUP_COMMIT_MILLIS = 20;
+
+    /** The number of commands after which the journal is compacted to a checkpoint. */
+    public static final int COMPACT_AFTER = 4096;
+
+    private static final byte[] MAGIC = {'M', 'S', 'W', 'J'};
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    //the longest command: a command byte and two five byte varints
+    private static final int MAX_RECORD = 11;
+
+    private final File file;
+    private final MinesweeperEngine engine;
+    //the flusher holds this while writing, so commands and checkpoints reach the file in order
+    private final Object channelLock = new Object();
+    private FileChannel channel;
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer writing = ByteBuffer.allocate(BUFFER_SIZE);
+    private int commandsSinceCheckpoint = 0;
+    private ScheduledExecutorService flusher;
+    private volatile IOException failure;
+
+    /**
+     * Opens the journal of the game played by {@code engine}. If the file holds a
+     * journal, its game is replayed into the engine first; otherwise a new journal is
+     * started from the engine's current state.
+     * @param file the journal file
+     * @param engine the engine of a new game on the seed the journal was saved from
+     * @throws IOException if the file cannot be read or written, or was saved from a
+     *     different seed
+     */
+    public GameJournal(File file, MinesweeperEngine engine) throws IOException {
+        this.file = file;
+        this.engine = engine;
+        if (file.length() > 0) {
+            resume();
+        } else {
+            checkpoint();
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "journal-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, GROUP_COMMIT_MILLIS,
+            GROUP_COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of commands replayed when the journal was opened, or since its
+     * last checkpoint.
+     * @return the number of commands after the checkpoint
+     */
+    public int getCommandsSinceCheckpoint() {
+        return commandsSinceCheckpoint;
+    }
+
+    /**
+     * Appends a command that has just been applied to the game. Moves must be in bounds;
+     * invalid commands and quit are not journaled.
+     * @param command one of the {@link CommandParser} constants
+     * @param row the row of a move, ignored for other commands
+     * @param col the column of a move, ignored for other commands
+     * @throws IOException if an earlier write of the journal failed
+     */
+    public void append(int command, int row, int col) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        boolean full;
+        synchronized (this) {
+            pending.put((byte) command);
+            if (isMove(command)) {
+                putVarint(pending, row);
+                putVarint(pending, col);
+            }
+            full = pending.remaining() < MAX_RECORD;
+        }
+        if (++commandsSinceCheckpoint >= COMPACT_AFTER) {
+            checkpoint();
+        } else if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes out every command appended so far and forces it to disk.
+     * @throws IOException if the journal cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (channelLock) {
+            synchronized (this) {
+                if (pending.position() == 0) {
+                    return;
+                }
+                ByteBuffer full = pending;
+                pending = writing;
+                writing = full;
+            }
+            writing.flip();
+            while (writing.hasRemaining()) {
+                channel.write(writing);
+            }
+            writing.clear();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Flushes the journal and closes it. The file is kept so the game can be resumed.
+     * @throws IOException if the journal cannot be written
+     */
+    public void close() throws IOException {
+        stopFlusher();
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Closes the journal and deletes its file, for a game that is over.
+     * @throws IOException if the file cannot be deleted
+     */
+    public void delete() throws IOException {
+        stopFlusher();
+        synchronized (channelLock) {
+            channel.close();
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Stops the flusher thread, waiting for a flush under way to finish. The thread is
+     * never interrupted, because interrupting a write would close the channel.
+     */
+    private void stopFlusher() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes the journal from the flusher thread, keeping any failure for the game
+     * thread to report.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Replaces the journal with a checkpoint of the game as it is now. The checkpoint is
+     * written to a file next to the journal, forced to disk and then moved over it, and
+     * the directory is forced after the move, so the journal on disk is always whole.
+     * Only the chunks of the board that were ever written are walked square by square. Moves before the checkpoint are forgotten by
+     * the engine too.
+     * @throws IOException if the checkpoint cannot be written
+     */
+    private void checkpoint() throws IOException {
+        MinesweeperBoard board = engine.getBoard();
+        int rows = board.getRows();
+        int cols = board.getCols();
+        File partial = new File(file.getPath() + ".tmp");
+        synchronized (channelLock) {
+            synchronized (this) {
+                pending.clear();
+                commandsSinceCheckpoint = 0;
+            }
+            if (channel != null) {
+                channel.close();
+            }
+            try (FileChannel out = FileChannel.open(partial.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = writing;
+                buffer.clear();
+                putHeader(buffer, board);
+                buffer.putInt(engine.getRoundsCompleted());
+                //every square's state, as runs of equal states; the untouched squares
+                //between two that have a state are taken as one stretch
+                int squares = rows * cols;
+                int run = 0;
+                int runState = 0;
+                for (int index = 0; index < squares; ) {
+                    int next = board.nextWithState(index);
+                    int length = (next < 0 ? squares : next) - index;
+                    int state = 0;
+                    if (length == 0) {
+                        state = board.get(index / cols, index % cols)
+                            & MinesweeperBoard.STATE_MASK;
+                        length = 1;
+                    }
+                    if (state != runState && run > 0) {
+                        buffer = writeRun(out, buffer, run, runState);
+                        run = 0;
+                    }
+                    runState = state;
+                    run += length;
+                    index += length;
+                }
+                buffer = writeRun(out, buffer, run, runState);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+                out.force(true);
+            }
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        }
+        engine.clearHistory();
+    }
+
+    /**
+     * Forces the directory of the journal to disk, so the move of a checkpoint over the
+     * journal survives a crash too. Platforms that cannot open a directory are left to
+     * make the move as durable as they do.
+     * @throws IOException if the directory cannot be forced
+     */
+    private void forceDirectory() throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        FileChannel handle;
+        try {
+            handle = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel opened = handle) {
+            opened.force(true);
+        }
+    }
+
+    /**
+     * Puts one run of the checkpoint into the buffer, first writing the buffer out if the
+     * run might not fit.
+     * @param out the checkpoint file
+     * @param buffer the buffer being filled
+     * @param run the number of squares in the run
+     * @param state the state bits of the squares
+     * @return the buffer
+     * @throws IOException if the buffer cannot be written
+     */
+    private static ByteBuffer writeRun(FileChannel out, ByteBuffer buffer, int run,
+        int state) throws IOException {
+        if (buffer.remaining() < MAX_RECORD) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+        putVarint(buffer, run);
+        buffer.put((byte) state);
+        return buffer;
+    }
+
+    /**
+     * Reads the journal into the engine: its checkpoint, then every whole command after
+     * it. A command cut short by a crash is cut off the end of the file.
+     * @throws IOException if the file cannot be read or was saved from a different seed
+     */
+    private void resume() throws IOException {
+        MinesweeperBoard board = engine.getBoard();
+        int cols = board.getCols();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        ByteBuffer expected = ByteBuffer.allocate(MAGIC.length + 1 + 3 * 4 + 8);
+        putHeader(expected, board);
+        expected.flip();
+        if (in.remaining() < expected.remaining() + 4
+            || !in.slice().limit(expected.remaining()).equals(expected)) {
+            throw new IOException(file + " is not a journal of this seed");
+        }
+        in.position(expected.remaining());
+        engine.setRoundsCompleted(in.getInt());
+        int squares = board.getRows() * cols;
+        try {
+            for (int index = 0; index < squares; ) {
+                int run = getVarint(in);
+                int state = in.get() & 0xFF;
+                if (run <= 0 || run > squares - index) {
+                    throw new IOException(file + " has a damaged checkpoint");
+                }
+                for (int end = index + run; index < end; index++) {
+                    int row = index / cols;
+                    int col = index - row * cols;
+                    if (state == MinesweeperBoard.REVEALED) {
+                        board.reveal(row, col);
+                    } else if (state == MinesweeperBoard.FLAG) {
+                        board.mark(row, col);
+                    } else if (state == MinesweeperBoard.GUESS) {
+                        board.guess(row, col);
+                    }
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " has a damaged checkpoint");
+        }
+        int whole = in.position();
+        while (in.hasRemaining()) {
+            try {
+                int command = in.get();
+                if (command <= CommandParser.INVALID || command > CommandParser.REDO
+                    || command == CommandParser.QUIT) {
+                    break;
+                }
+                int row = isMove(command) ? getVarint(in) : 0;
+                int col = isMove(command) ? getVarint(in) : 0;
+                if (row < 0 || col < 0) {
+                    break;
+                }
+                engine.apply(command, row, col);
+                commandsSinceCheckpoint++;
+                whole = in.position();
+            } catch (BufferUnderflowException e) {
+                break;
+            }
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        channel.truncate(whole);
+        channel.position(whole);
+    }
+
+    /**
+     * Puts the header that ties a journal to its seed: the magic bytes, the version, the
+     * size of the board, and the number of mines and a hash of where they are.
+     * @param buffer the buffer to put the header in
+     * @param board the board of the seed
+     */
+    private static void putHeader(ByteBuffer buffer, MinesweeperBoard board) {
+        long hash = board.hashMines(MinesweeperBoard.HASH_BASIS);
+        buffer.put(MAGIC).put((byte) VERSION).putInt(board.getRows()).putInt(board.getCols())
+            .putInt(board.getMineCount()).putLong(hash);
+    }
+
+    /**
+     * Indicates whether or not a command names a square.
+     * @param command one of the {@link CommandParser} constants
+     * @return true for reveal, mark and guess; false otherwise
+     */
+    private static boolean isMove(int command) {
+        return command == CommandParser.REVEAL || command == CommandParser.MARK
+            || command == CommandParser.GUESS;
+    }
+
+    /**
+     * Puts a non-negative int as a varint, seven bits per byte with the lowest first.
+     * @param buffer the buffer to put it in
+     * @param value the value
+     */
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Gets a varint written by {@link #putVarint}.
+     * @param buffer the buffer to read from
+     * @return the value, or -1 if it is longer than an int
+     * @throws BufferUnderflowException if the buffer ends inside the varint
+     */
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,326 @@
+package cs1302.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The {@link cs1302.game.GameMetrics} class records what the rounds of a game cost: a
+ * {@link LatencyHistogram} for each phase of a round, the bytes allocated by each move,
+ * and counters for the kinds of command applied. It is optional; the game and engine
+ * only touch it when one has been handed to them, so a game played without metrics
+ * does no timing at all.
+ *
+ * <p>The metrics can be read through JMX, once {@link #register} has been called, and
+ * written to a file as JSON or text every few seconds by {@link #startDump}. Everything
+ * recorded is kept in one recording, which {@link #reset} replaces with an empty one
+ * through a volatile field instead of clearing it, so a reset from the JMX thread never
+ * races with the game thread writing to the histograms.
+ */
+public class GameMetrics implements GameMetricsMBean {
+
+    /** The name the metrics are registered under with JMX. */
+    public static final String OBJECT_NAME = "cs1302.game:type=GameMetrics";
+
+    /** Parsing the command line typed by the player. */
+    public static final int PARSE = 0;
+    /** Applying the command, including the win check and any messages it prints. */
+    public static final int APPLY = 1;
+    /** Checking whether the board is solved. */
+    public static final int WIN_CHECK = 2;
+    /** Drawing the board and prompt at the start of a round. */
+    public static final int RENDER = 3;
+
+    private static final String[] PHASES = {"parse", "apply", "winCheck", "render"};
+
+    private final com.sun.management.ThreadMXBean threads;
+    private volatile Recording recording = new Recording();
+    private ScheduledExecutorService dumper;
+
+    /**
+     * What has been recorded since the metrics were created or last reset.
+     */
+    private static class Recording {
+
+        private final LatencyHistogram[] latencies = new LatencyHistogram[PHASES.length];
+        private final LatencyHistogram allocations = new LatencyHistogram();
+        private volatile long moves;
+        private volatile long reveals;
+        private volatile long marks;
+        private volatile long guesses;
+        private volatile long invalidCommands;
+
+        /**
+         * Creates an empty recording.
+         */
+        Recording() {
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                latencies[phase] = new LatencyHistogram();
+            }
+        }
+    }
+
+    /**
+     * Creates empty metrics, turning on allocation counting in the JVM if it can be.
+     */
+    public GameMetrics() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocating = null;
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            allocating = (com.sun.management.ThreadMXBean) bean;
+            if (allocating.isThreadAllocatedMemorySupported()) {
+                allocating.setThreadAllocatedMemoryEnabled(true);
+            } else {
+                allocating = null;
+            }
+        }
+        threads = allocating;
+    }
+
+    /**
+     * Records how long a phase took.
+     * @param phase one of {@link #PARSE}, {@link #APPLY}, {@link #WIN_CHECK} or
+     *     {@link #RENDER}
+     * @param nanos the time taken, in nanoseconds
+     */
+    public void record(int phase, long nanos) {
+        recording.latencies[phase].record(nanos);
+    }
+
+    /**
+     * Returns the number of bytes the calling thread has allocated so far, to be passed
+     * to {@link #recordMove} once the move is over.
+     * @return the bytes allocated, or zero if the JVM cannot measure it
+     */
+    public long allocatedBytes() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Counts a finished move and records the bytes it allocated.
+     * @param allocatedAtStart what {@link #allocatedBytes} returned when the move began
+     */
+    public void recordMove(long allocatedAtStart) {
+        Recording current = recording;
+        if (threads != null) {
+            current.allocations.record(threads.getCurrentThreadAllocatedBytes()
+                - allocatedAtStart);
+        }
+        current.moves++;
+    }
+
+    /**
+     * Counts a reveal.
+     */
+    public void countReveal() {
+        recording.reveals++;
+    }
+
+    /**
+     * Counts a mark.
+     */
+    public void countMark() {
+        recording.marks++;
+    }
+
+    /**
+     * Counts a guess.
+     */
+    public void countGuess() {
+        recording.guesses++;
+    }
+
+    /**
+     * Counts a command that was not recognized or named a square outside of the board.
+     */
+    public void countInvalid() {
+        recording.invalidCommands++;
+    }
+
+    @Override
+    public long getMoves() {
+        return recording.moves;
+    }
+
+    @Override
+    public long getReveals() {
+        return recording.reveals;
+    }
+
+    @Override
+    public long getMarks() {
+        return recording.marks;
+    }
+
+    @Override
+    public long getGuesses() {
+        return recording.guesses;
+    }
+
+    @Override
+    public long getInvalidCommands() {
+        return recording.invalidCommands;
+    }
+
+    @Override
+    public double getMeanAllocatedBytesPerMove() {
+        return threads == null ? -1 : recording.allocations.getMean();
+    }
+
+    @Override
+    public String[] getPhases() {
+        return PHASES.clone();
+    }
+
+    @Override
+    public long percentileNanos(String phase, double percentile) {
+        for (int k = 0; k < PHASES.length; k++) {
+            if (PHASES[k].equals(phase)) {
+                return recording.latencies[k].getPercentile(percentile);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void reset() {
+        recording = new Recording();
+    }
+
+    @Override
+    public String getJson() {
+        Recording current = recording;
+        StringBuilder json = new StringBuilder();
+        json.append("{\"moves\":").append(current.moves)
+            .append(",\"reveals\":").append(current.reveals)
+            .append(",\"marks\":").append(current.marks)
+            .append(",\"guesses\":").append(current.guesses)
+            .append(",\"invalidCommands\":").append(current.invalidCommands)
+            .append(",\"latencyNanos\":{");
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            json.append(phase == 0 ? "" : ",").append('"').append(PHASES[phase]).append("\":");
+            appendJson(json, current.latencies[phase]);
+        }
+        json.append("},\"allocatedBytesPerMove\":");
+        if (threads == null) {
+            json.append("null");
+        } else {
+            appendJson(json, current.allocations);
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Returns the metrics as lines of text, one per phase and one for allocations.
+     * @return the text
+     */
+    @Override
+    public String toString() {
+        Recording current = recording;
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT,
+            "moves=%d reveals=%d marks=%d guesses=%d invalid=%d%n", current.moves,
+            current.reveals, current.marks, current.guesses, current.invalidCommands));
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            appendText(text, PHASES[phase] + " ns", current.latencies[phase]);
+        }
+        if (threads != null) {
+            appendText(text, "bytes/move", current.allocations);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under {@link #OBJECT_NAME}.
+     * @throws JMException if they cannot be registered
+     */
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+            new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+     * Starts writing the metrics to a file every {@code periodSeconds} seconds on a
+     * daemon thread. The file is written as JSON if its name ends in {@code .json}, and as
+     * text otherwise, and is replaced as a whole each time.
+     * @param file the file to write
+     * @param periodSeconds the number of seconds between writes
+     */
+    public void startDump(File file, long periodSeconds) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(file), periodSeconds, periodSeconds,
+            TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic writes, if any.
+     */
+    public void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Writes the metrics to a file once, as JSON if its name ends in {@code .json} and as
+     * text otherwise. The file is written next to its final name and then moved over it,
+     * so a reader never sees half of it.
+     * @param file the file to write
+     * @return true if the file was written; false otherwise
+     */
+    public boolean dump(File file) {
+        String content = file.getName().endsWith(".json") ? getJson() + "\n" : toString();
+        File partial = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(partial.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Appends the summary of a histogram as a JSON object.
+     * @param json the JSON being built
+     * @param histogram the histogram to summarize
+     */
+    private static void appendJson(StringBuilder json, LatencyHistogram histogram) {
+        json.append(String.format(Locale.ROOT,
+            "{\"count\":%d,\"mean\":%.1f,\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}",
+            histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+            histogram.getPercentile(90), histogram.getPercentile(99),
+            histogram.getPercentile(99.9), histogram.getMax()));
+    }
+
+    /**
+     * Appends the summary of a histogram as a line of text.
+     * @param text the text being built
+     * @param label the label of the line
+     * @param histogram the histogram to summarize
+     */
+    private static void appendText(StringBuilder text, String label,
+        LatencyHistogram histogram) {
+        text.append(String.format(Locale.ROOT,
+            "%-14s count=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d%n", label,
+            histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+            histogram.getPercentile(90), histogram.getPercentile(99),
+            histogram.getPercentile(99.9), histogram.getMax()));
+    }
+}
@@ -0,0 +1,69 @@
+package cs1302.game;
+
+/**
+ * The management interface through which a {@link GameMetrics} is exposed over JMX.
+ * Latencies are in nanoseconds and allocations in bytes.
+ */
+public interface GameMetricsMBean {
+
+    /**
+     * Returns the number of moves played.
+     * @return the number of moves
+     */
+    long getMoves();
+
+    /**
+     * Returns the number of reveals applied.
+     * @return the number of reveals
+     */
+    long getReveals();
+
+    /**
+     * Returns the number of marks applied.
+     * @return the number of marks
+     */
+    long getMarks();
+
+    /**
+     * Returns the number of guesses applied.
+     * @return the number of guesses
+     */
+    long getGuesses();
+
+    /**
+     * Returns the number of commands that were not recognized or were out of bounds.
+     * @return the number of invalid commands
+     */
+    long getInvalidCommands();
+
+    /**
+     * Returns the mean number of bytes allocated by a move.
+     * @return the mean allocation, or -1 if the JVM cannot measure it
+     */
+    double getMeanAllocatedBytesPerMove();
+
+    /**
+     * Returns the names of the timed phases.
+     * @return the phase names
+     */
+    String[] getPhases();
+
+    /**
+     * Returns every metric as a JSON object.
+     * @return the JSON text
+     */
+    String getJson();
+
+    /**
+     * Returns the latency of a phase at a percentile.
+     * @param phase the name of the phase
+     * @param percentile the percentage, from 0 to 100
+     * @return the latency in nanoseconds, or -1 if there is no such phase
+     */
+    long percentileNanos(String phase, double percentile);
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+}
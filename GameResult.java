@@ -0,0 +1,99 @@
+package cs1302.game;
+
+/**
+ * The {@link cs1302.game.GameResult} class holds the outcome of a game played by a
+ * {@link MinesweeperEngine}.
+ */
+public class GameResult {
+
+    private final int status;
+    private final int roundsCompleted;
+    private final double score;
+    private final int invalidCommands;
+    private final String finalBoard;
+
+    /**
+     * Creates a result.
+     * @param status one of the {@link MinesweeperEngine} status constants
+     * @param roundsCompleted the number of rounds completed
+     * @param score the score, which is zero unless the game was won
+     * @param invalidCommands the number of invalid commands
+     * @param finalBoard the final "nofog" view of the board, or null if it was not kept
+     */
+    public GameResult(int status, int roundsCompleted, double score, int invalidCommands,
+        String finalBoard) {
+        this.status = status;
+        this.roundsCompleted = roundsCompleted;
+        this.score = score;
+        this.invalidCommands = invalidCommands;
+        this.finalBoard = finalBoard;
+    }
+
+    /**
+     * Returns whether the game was won, lost, quit or left unfinished.
+     * @return one of the {@link MinesweeperEngine} status constants
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the number of rounds completed.
+     * @return the number of rounds completed
+     */
+    public int getRoundsCompleted() {
+        return roundsCompleted;
+    }
+
+    /**
+     * Returns the score of the game.
+     * @return the score, which is zero unless the game was won
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the number of invalid commands.
+     * @return the number of invalid commands
+     */
+    public int getInvalidCommands() {
+        return invalidCommands;
+    }
+
+    /**
+     * Returns the final "nofog" view of the board.
+     * @return the final board, or null if it was not kept
+     */
+    public String getFinalBoard() {
+        return finalBoard;
+    }
+
+    /**
+     * Returns the name of a status.
+     * @param status one of the {@link MinesweeperEngine} status constants
+     * @return the name of the status
+     */
+    public static String statusName(int status) {
+        switch (status) {
+        case MinesweeperEngine.WON:
+            return "WON";
+        case MinesweeperEngine.LOST:
+            return "LOST";
+        case MinesweeperEngine.QUIT:
+            return "QUIT";
+        default:
+            return "UNFINISHED";
+        }
+    }
+
+    /**
+     * Returns a one line summary of the result.
+     * @return the status, rounds and score
+     */
+    @Override
+    public String toString() {
+        return String.format("%s rounds=%d score=%.2f invalid=%d", statusName(status),
+            roundsCompleted, score, invalidCommands);
+    }
+}
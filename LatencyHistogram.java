@@ -0,0 +1,145 @@
+package cs1302.game;
+
+import java.util.Arrays;
+
+/**
+ * The {@link cs1302.game.LatencyHistogram} class counts non-negative values, such as
+ * nanoseconds or bytes, in buckets whose width grows with the value, in the manner of
+ * an HDR histogram. Values below {@code 2 * }{@value #SUB_BUCKETS} get a bucket each;
+ * above that every power of two is split into {@value #SUB_BUCKETS} buckets, so any
+ * value is known to within about three percent. Recording a value is a few shifts and
+ * an array increment, and never allocates.
+ *
+ * <p>A histogram is written by one thread. Other threads may read it while it is being
+ * written; what they see may lag by a few values but is never corrupt.
+ */
+public class LatencyHistogram {
+
+    /** The number of buckets each power of two is split into. */
+    public static final int SUB_BUCKETS = 32;
+
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private volatile long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Records one value.
+     * @param value the value, which is treated as zero if negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucket(value)]++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+        count++;
+    }
+
+    /**
+     * Forgets every value recorded so far.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        sum = 0;
+        max = 0;
+        count = 0;
+    }
+
+    /**
+     * Adds every value recorded by another histogram to this one, such as to total the
+     * histograms kept by many threads once they are done.
+     * @param other the histogram to add, which must not be written meanwhile
+     */
+    public void add(LatencyHistogram other) {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        sum += other.sum;
+        max = Math.max(max, other.max);
+        count += other.count;
+    }
+
+    /**
+     * Returns the number of values recorded.
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     * @return the largest value, or zero if none was recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     * @return the mean, or zero if none was recorded
+     */
+    public double getMean() {
+        long recorded = count;
+        return recorded == 0 ? 0 : (double) sum / recorded;
+    }
+
+    /**
+     * Returns a value that the given percentage of the recorded values do not exceed,
+     * rounded up to the top of its bucket.
+     * @param percentile the percentage, from 0 to 100
+     * @return the value at the percentile, or zero if none was recorded
+     */
+    public long getPercentile(double percentile) {
+        long recorded = count;
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(highestIn(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the bucket a value is counted in.
+     * @param value the non-negative value
+     * @return the index of its bucket
+     */
+    private static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        //keeps the top SUB_BITS + 1 bits of the value; the leading one picks the half
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS - 1;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     * @param bucket the index of the bucket
+     * @return the largest value of the bucket
+     */
+    private static long highestIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        long highest = ((top + 1) << shift) - 1;
+        //only the last bucket reaches past Long.MAX_VALUE
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
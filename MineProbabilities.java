@@ -0,0 +1,1066 @@
+package cs1302.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link cs1302.game.MineProbabilities} class works out, for every hidden square,
+ * the exact chance that it holds a mine given what the player can see: the counts of
+ * revealed squares and the total number of mines.
+ *
+ * <p>Hidden squares next to a revealed count form the frontier. The frontier is split
+ * into components that share no count, and each component is counted on its own. The
+ * squares of a component are put in a line and every arrangement of mines is counted
+ * one square at a time, remembering only the partial sums of the counts that straddle
+ * the current square; arrangements that reach the same sums are merged, so a long thin
+ * frontier costs little more than a short one. A second pass from the other end gives
+ * each square's odds. The components are then combined with the number of ways the
+ * remaining mines can lie in the squares away from every count.
+ *
+ * <p>The work is limited by a number of merged states and a time budget, which is
+ * checked while the counts are collected and the components formed as well as while
+ * they are counted. Counts not reached in time, and a component that goes over either
+ * limit, are treated as if they had not been seen, and when there are too many
+ * components to combine exactly they are weighed one at a time against a fitted mine
+ * density. Either way the odds stay a consistent estimate and {@link #isExact} reports
+ * that they are no longer exact. A flag placed by the player may be wrong, so a flagged
+ * square is counted as hidden like any other and shows its own odds.
+ */
+public class MineProbabilities {
+
+    /** The default limit on the number of merged states kept while counting. */
+    public static final int DEFAULT_MAX_STATES = 1 << 20;
+    /** The default time budget, in nanoseconds. */
+    public static final long DEFAULT_MAX_NANOS = 500_000_000L;
+
+    //the partial sums of up to 15 straddling counts are packed four bits each into a long
+    private static final int MAX_STRADDLING = 15;
+
+    //keeps a reweighed count within the range of a double
+    private static final double MAX_EXPONENT = 700;
+
+    //the frontier ids of the squares are kept in pages of this many squares
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    //the squares scanned for counts between looks at the clock
+    private static final int CHECK_EVERY = 1 << 10;
+
+    private static final String[] PERCENT_GLYPHS = new String[100];
+    private static final String CERTAIN_MINE_GLYPH = "100";
+    private static final String UNKNOWN_GLYPH = " ? ";
+
+    static {
+        for (int p = 0; p < PERCENT_GLYPHS.length; p++) {
+            PERCENT_GLYPHS[p] = String.format("%2d%%", p);
+        }
+    }
+
+    private final MinesweeperBoard board;
+    private final int maxStates;
+    private final long maxNanos;
+
+    //the frontier squares, numbered in the order they are found, and each square's
+    //number plus one by flat index, in pages allocated where the frontier reaches
+    private final int[][] frontierIds;
+    private int[] frontierSquares = new int[0];
+    private double[] frontierOdds = new double[0];
+    private double unconstrainedOdds;
+    private boolean exact;
+    private boolean consistent;
+    private int componentCount;
+
+    //the counts seen on the board: their targets and the frontier squares they cover
+    private int constraintCount;
+    private int[] targets;
+    private int[][] constraintCells;
+    private int[][] cellConstraints;
+
+    //each frontier square's position in the line of its component, and whether each
+    //count has been reached, shared by the components since no two share a square
+    private int[] positions;
+    private boolean[] constraintSeen;
+    private int[] seenBuffer;
+
+    //the log of the odds ratio every counted mine is weighed by, which keeps the counts
+    //of a large component within the range of a double; the combination undoes it
+    private double tilt;
+    private long deadline;
+
+    /**
+     * Creates a calculator for a board with the default budgets.
+     * @param board the board to calculate the odds for
+     */
+    public MineProbabilities(MinesweeperBoard board) {
+        this(board, DEFAULT_MAX_STATES, DEFAULT_MAX_NANOS);
+    }
+
+    /**
+     * Creates a calculator for a board.
+     * @param board the board to calculate the odds for
+     * @param maxStates the most merged states kept while counting
+     * @param maxNanos the time budget of one calculation, in nanoseconds
+     */
+    public MineProbabilities(MinesweeperBoard board, int maxStates, long maxNanos) {
+        this.board = board;
+        this.maxStates = maxStates;
+        this.maxNanos = maxNanos;
+        long squares = (long) board.getRows() * board.getCols();
+        frontierIds = new int[(int) ((squares + PAGE_MASK) >>> PAGE_BITS)][];
+    }
+
+    /**
+     * Calculates the odds for the board as it is now.
+     */
+    public void compute() {
+        deadline = System.nanoTime() + maxNanos;
+        exact = true;
+        collectConstraints();
+        int cells = frontierSquares.length;
+        frontierOdds = new double[cells];
+        positions = new int[cells];
+        constraintSeen = new boolean[constraintCount];
+        seenBuffer = new int[constraintCount];
+
+        //splits the frontier into components joined by shared counts
+        int[] parent = new int[cells];
+        for (int c = 0; c < cells; c++) {
+            parent[c] = c;
+        }
+        for (int k = 0; k < constraintCount; k++) {
+            int[] members = constraintCells[k];
+            for (int m = 1; m < members.length; m++) {
+                parent[find(parent, members[m])] = find(parent, members[0]);
+            }
+        }
+        //the squares of the component rooted at r are members[start[r]] up to start[r + 1]
+        int[] start = new int[cells + 1];
+        for (int c = 0; c < cells; c++) {
+            parent[c] = find(parent, c);
+            start[parent[c] + 1]++;
+        }
+        componentCount = 0;
+        for (int c = 0; c < cells; c++) {
+            componentCount += start[c + 1] > 0 ? 1 : 0;
+            start[c + 1] += start[c];
+        }
+        int[] members = new int[cells];
+        int[] filled = Arrays.copyOf(start, cells);
+        for (int c = 0; c < cells; c++) {
+            members[filled[parent[c]]++] = c;
+        }
+
+        //counts each component by number of mines or, over budget, only in total; one
+        //over budget either way leaves its squares unconstrained
+        int remaining = board.getMineCount();
+        int unconstrained = board.getRows() * board.getCols() - board.getRevealedCount();
+        tilt = logOdds(remaining, unconstrained);
+        List<Component> components = new ArrayList<>();
+        for (int root = 0; root < cells; root++) {
+            int size = start[root + 1] - start[root];
+            if (size == 0) {
+                continue;
+            } else if (System.nanoTime() > deadline) {
+                exact = false;
+                break;
+            }
+            Component component = new Component(members, start[root], start[root + 1]);
+            if (!component.ordered) {
+                exact = false;
+                break;
+            } else if (!component.count(true)) {
+                exact = false;
+                if (!component.count(false)) {
+                    continue;
+                }
+            }
+            components.add(component);
+            unconstrained -= size;
+        }
+        combine(components, remaining, unconstrained);
+    }
+
+    /**
+     * Returns the chance that a square holds a mine.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return the chance from zero to one, or NaN if the board contradicts itself
+     */
+    public double get(int row, int col) {
+        int cell = board.get(row, col);
+        if ((cell & MinesweeperBoard.REVEALED) != 0) {
+            return 0;
+        } else if (!consistent) {
+            return Double.NaN;
+        }
+        int id = frontierId(row * board.getCols() + col);
+        return id < 0 ? unconstrainedOdds : frontierOdds[id];
+    }
+
+    /**
+     * Returns the glyph shown for a square in the odds view. Revealed squares look as
+     * they normally do; every other square, flagged or not, shows its chance of holding
+     * a mine as a percentage, with " 0%" only when it is certainly safe and "100" only
+     * when it is certainly a mine.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return the three character glyph of the square
+     */
+    public String glyph(int row, int col) {
+        int cell = board.get(row, col);
+        if ((cell & MinesweeperBoard.REVEALED) != 0) {
+            return board.glyph(row, col);
+        }
+        double odds = get(row, col);
+        if (Double.isNaN(odds)) {
+            return UNKNOWN_GLYPH;
+        } else if (odds >= 1 - 1e-9) {
+            return CERTAIN_MINE_GLYPH;
+        } else if (odds <= 1e-9) {
+            return PERCENT_GLYPHS[0];
+        }
+        int percent = (int) Math.round(odds * 100);
+        return PERCENT_GLYPHS[Math.max(1, Math.min(99, percent))];
+    }
+
+    /**
+     * Indicates whether or not every component was counted and combined within the budgets.
+     * @return true if the odds are exact; false if they are an estimate
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Indicates whether or not some arrangement of the mines fits everything on the board.
+     * Flags are not part of it, so a wrong flag never makes the board inconsistent.
+     * @return true if the board is consistent; false otherwise
+     */
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    /**
+     * Returns the number of independent components the frontier was split into.
+     * @return the number of components
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Returns the number of a frontier square.
+     * @param index the flat index of the square
+     * @return the number of the square, or -1 if it is not on the frontier
+     */
+    private int frontierId(int index) {
+        int[] page = frontierIds[index >>> PAGE_BITS];
+        return page == null ? -1 : page[index & PAGE_MASK] - 1;
+    }
+
+    /**
+     * Finds the revealed counts that still have hidden neighbours, flagged or not, and
+     * numbers the frontier squares they cover. Once the time budget runs out, the counts
+     * not reached yet are left out and the odds are no longer exact.
+     */
+    private void collectConstraints() {
+        int rows = board.getRows();
+        int cols = board.getCols();
+        for (int index : frontierSquares) {
+            frontierIds[index >>> PAGE_BITS][index & PAGE_MASK] = 0;
+        }
+        List<int[]> found = new ArrayList<>();
+        int[] foundTargets = new int[64];
+        int[] squares = new int[64];
+        int squareCount = 0;
+        int[] unknown = new int[8];
+        int scanned = 0;
+        scan:
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (++scanned == CHECK_EVERY) {
+                    scanned = 0;
+                    if (System.nanoTime() > deadline) {
+                        exact = false;
+                        break scan;
+                    }
+                }
+                if ((board.get(i, j) & MinesweeperBoard.REVEALED) == 0) {
+                    continue;
+                }
+                int count = 0;
+                int target = board.getNumAdjMines(i, j);
+                int rowEnd = Math.min(i + 1, rows - 1);
+                int colEnd = Math.min(j + 1, cols - 1);
+                for (int a = Math.max(i - 1, 0); a <= rowEnd; a++) {
+                    for (int b = Math.max(j - 1, 0); b <= colEnd; b++) {
+                        int cell = board.get(a, b);
+                        if ((cell & MinesweeperBoard.REVEALED) == 0) {
+                            int index = a * cols + b;
+                            int id = frontierId(index);
+                            if (id < 0) {
+                                id = squareCount;
+                                if (squareCount == squares.length) {
+                                    squares = Arrays.copyOf(squares, squareCount * 2);
+                                }
+                                squares[squareCount++] = index;
+                                int[] page = frontierIds[index >>> PAGE_BITS];
+                                if (page == null) {
+                                    page = new int[PAGE_MASK + 1];
+                                    frontierIds[index >>> PAGE_BITS] = page;
+                                }
+                                page[index & PAGE_MASK] = id + 1;
+                            }
+                            unknown[count++] = id;
+                        }
+                    }
+                }
+                if (count > 0) {
+                    if (found.size() == foundTargets.length) {
+                        foundTargets = Arrays.copyOf(foundTargets, found.size() * 2);
+                    }
+                    foundTargets[found.size()] = target;
+                    found.add(Arrays.copyOf(unknown, count));
+                }
+            }
+        }
+        constraintCount = found.size();
+        constraintCells = found.toArray(new int[constraintCount][]);
+        targets = Arrays.copyOf(foundTargets, constraintCount);
+        frontierSquares = Arrays.copyOf(squares, squareCount);
+        int[] degree = new int[squareCount];
+        for (int k = 0; k < constraintCount; k++) {
+            for (int c : constraintCells[k]) {
+                degree[c]++;
+            }
+        }
+        cellConstraints = new int[squareCount][];
+        for (int c = 0; c < squareCount; c++) {
+            cellConstraints[c] = new int[degree[c]];
+            degree[c] = 0;
+        }
+        for (int k = 0; k < constraintCount; k++) {
+            for (int c : constraintCells[k]) {
+                cellConstraints[c][degree[c]++] = k;
+            }
+        }
+    }
+
+    /**
+     * Combines the counted components with the ways of placing the remaining mines in
+     * the unconstrained squares, and stores the odds of every square. The exact
+     * combination keeps one array per component as long as the frontier can hold mines;
+     * when that is over the state budget the components are combined approximately.
+     * @param components the components counted exactly
+     * @param remaining the number of hidden mines
+     * @param unconstrained the number of hidden squares outside of those components
+     */
+    private void combine(List<Component> components, int remaining, int unconstrained) {
+        int size = components.size();
+        int maxCounted = 0;
+        for (Component component : components) {
+            maxCounted += component.ways.length - 1;
+        }
+        if (!exact || (long) size * (maxCounted + 1) > maxStates
+            || System.nanoTime() > deadline) {
+            exact = false;
+            combineApproximately(components, remaining, unconstrained);
+            return;
+        }
+        //after[c][t] weighs t mines in component c and later ones, with the binomial
+        //ways of placing the rest in the unconstrained squares folded in
+        double[][] after = new double[size + 1][];
+        after[size] = binomialWeights(unconstrained, remaining, maxCounted, tilt);
+        for (int c = size - 1; c >= 0; c--) {
+            after[c] = normalize(correlate(components.get(c).ways, after[c + 1]));
+        }
+        //before counts the arrangements of the components before c by number of mines
+        double[] before = {1};
+        double frontierMines = 0;
+        consistent = true;
+        for (int c = 0; c < size; c++) {
+            Component component = components.get(c);
+            //byCount[k] weighs the arrangements in which this component holds k mines
+            double[] byCount = correlate(before, after[c + 1]);
+            double total = 0;
+            double mines = 0;
+            for (int k = 0; k < component.ways.length; k++) {
+                total += component.ways[k] * byCount[k];
+                mines += k * component.ways[k] * byCount[k];
+            }
+            if (!(total > 0)) {
+                consistent = false;
+                return;
+            }
+            frontierMines += mines / total;
+            store(component, byCount, total);
+            before = normalize(convolve(before, component.ways));
+        }
+        if (size == 0) {
+            consistent = after[0].length > 0 && after[0][0] > 0;
+        }
+        unconstrainedOdds = unconstrained == 0 ? 0
+            : Math.max(0, Math.min(1, (remaining - frontierMines) / unconstrained));
+    }
+
+    /**
+     * Combines the components as if the unconstrained squares each held a mine on their
+     * own with the same chance, which is close to exact when they are many. The chance
+     * is chosen so that the expected number of mines matches the mines left, and each
+     * component is then weighed on its own.
+     * @param components the components counted exactly
+     * @param remaining the number of hidden mines
+     * @param unconstrained the number of hidden squares outside of those components
+     */
+    private void combineApproximately(List<Component> components, int remaining,
+        int unconstrained) {
+        int most = unconstrained;
+        int least = 0;
+        for (Component component : components) {
+            if (!component.byCount) {
+                if (!(component.ways[0] > 0)) {
+                    consistent = false;
+                    return;
+                }
+                most += component.order.length;
+                continue;
+            }
+            int low = 0;
+            while (low < component.ways.length && component.ways[low] == 0) {
+                low++;
+            }
+            int high = component.ways.length - 1;
+            while (high >= 0 && component.ways[high] == 0) {
+                high--;
+            }
+            if (high < 0) {
+                consistent = false;
+                return;
+            }
+            least += low;
+            most += high;
+        }
+        consistent = remaining >= least && remaining <= most;
+        if (!consistent) {
+            return;
+        }
+        //bisects on the log of the odds ratio of a single square holding a mine, until
+        //the interval is too narrow to change the odds
+        double low = -60;
+        double high = 60;
+        while (high - low > 1e-12) {
+            double middle = (low + high) / 2;
+            if (expectedMines(components, unconstrained, middle, false) < remaining) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        double logRatio = (low + high) / 2;
+        expectedMines(components, unconstrained, logRatio, true);
+        unconstrainedOdds = 1 / (1 + Math.exp(-logRatio));
+    }
+
+    /**
+     * Returns the expected number of hidden mines when every mine is weighed by the same
+     * odds ratio, optionally storing the odds of the frontier squares. A component
+     * counted only in total keeps the weighing it was counted with.
+     * @param components the components counted
+     * @param unconstrained the number of unconstrained squares
+     * @param logRatio the log of the odds ratio
+     * @param store true to store the odds of the frontier squares; false to only count
+     * @return the expected number of mines
+     */
+    private double expectedMines(List<Component> components, int unconstrained,
+        double logRatio, boolean store) {
+        double mines = unconstrained / (1 + Math.exp(-logRatio));
+        double shift = logRatio - tilt;
+        for (Component component : components) {
+            double[] ways = component.ways;
+            double[] byCount = {1};
+            double total = ways[0];
+            double expected = component.expected;
+            if (component.byCount) {
+                //moves k mines from the weighing they were counted with to this one
+                double max = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < ways.length; k++) {
+                    if (ways[k] > 0) {
+                        max = Math.max(max, Math.log(ways[k]) + k * shift);
+                    }
+                }
+                byCount = new double[ways.length];
+                total = 0;
+                expected = 0;
+                for (int k = 0; k < ways.length; k++) {
+                    if (ways[k] > 0) {
+                        byCount[k] = Math.exp(Math.min(k * shift - max, MAX_EXPONENT));
+                        total += ways[k] * byCount[k];
+                        expected += k * ways[k] * byCount[k];
+                    }
+                }
+                expected /= total;
+            }
+            mines += expected;
+            if (store) {
+                store(component, byCount, total);
+            }
+        }
+        return mines;
+    }
+
+    /**
+     * Stores the odds of the squares of a component.
+     * @param component the component
+     * @param byCount the weight of the component holding each number of mines
+     * @param total the weight of all of the component's arrangements
+     */
+    private void store(Component component, double[] byCount, double total) {
+        for (int p = 0; p < component.order.length; p++) {
+            double[] mineWays = component.mineWays[p];
+            double sum = 0;
+            for (int k = 0; k < mineWays.length; k++) {
+                sum += mineWays[k] * byCount[k];
+            }
+            frontierOdds[component.order[p]] = Math.min(1, sum / total);
+        }
+    }
+
+    /**
+     * Returns, for each number t of mines in the counted components, a value
+     * proportional to the number of ways of placing the other mines in the unconstrained
+     * squares, divided by the weight the components were counted with.
+     * @param unconstrained the number of unconstrained squares
+     * @param remaining the number of hidden mines
+     * @param maxCounted the most mines the counted components can hold
+     * @param tilt the log of the odds ratio each counted mine was weighed by
+     * @return the weights, indexed by t
+     */
+    private static double[] binomialWeights(int unconstrained, int remaining, int maxCounted,
+        double tilt) {
+        double[] weights = new double[maxCounted + 1];
+        int high = Math.min(remaining, unconstrained);
+        int low = Math.max(remaining - maxCounted, 0);
+        if (high < low) {
+            return weights;
+        }
+        //works from C(u, high) down to C(u, low) in logs, relative to C(u, high)
+        double[] logs = new double[high - low + 1];
+        for (int m = high; m > low; m--) {
+            logs[m - 1 - low] = logs[m - low] + Math.log(m) - Math.log(unconstrained - m + 1);
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int m = low; m <= high; m++) {
+            logs[m - low] -= (remaining - m) * tilt;
+            max = Math.max(max, logs[m - low]);
+        }
+        for (int m = low; m <= high; m++) {
+            weights[remaining - m] = Math.exp(logs[m - low] - max);
+        }
+        return weights;
+    }
+
+    /**
+     * Returns {@code c[k] = sum of a[i] * b[k + i]} for every k for which
+     * {@code b[k]} exists.
+     * @param a the shorter sequence
+     * @param b the longer sequence
+     * @return the correlation, of length {@code b.length - a.length + 1}
+     */
+    private static double[] correlate(double[] a, double[] b) {
+        double[] result = new double[Math.max(b.length - a.length + 1, 0)];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != 0) {
+                for (int k = 0; k < result.length; k++) {
+                    result[k] += a[i] * b[k + i];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scales an array so its largest value is one, unless it is all zeros.
+     * @param values the array to scale
+     * @return the same array
+     */
+    private static double[] normalize(double[] values) {
+        double max = 0;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+        if (max > 0) {
+            for (int k = 0; k < values.length; k++) {
+                values[k] /= max;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Multiplies two polynomials given by their coefficients.
+     * @param a the first polynomial
+     * @param b the second polynomial
+     * @return the product
+     */
+    private static double[] convolve(double[] a, double[] b) {
+        double[] product = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != 0) {
+                for (int j = 0; j < b.length; j++) {
+                    product[i + j] += a[i] * b[j];
+                }
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Returns the log of the odds ratio of a square holding a mine when the mines are
+     * spread evenly, kept away from zero and one.
+     * @param mines the number of mines
+     * @param squares the number of squares they are spread over
+     * @return the log odds ratio
+     */
+    private static double logOdds(int mines, int squares) {
+        if (squares <= 0) {
+            return 0;
+        }
+        double density = Math.max(1e-9, Math.min(1 - 1e-9, (double) mines / squares));
+        return Math.log(density / (1 - density));
+    }
+
+    /**
+     * Finds the root of a frontier square in the union-find forest, halving the path.
+     * @param parent the parent of each square
+     * @param c the square
+     * @return the root of the square's component
+     */
+    private static int find(int[] parent, int c) {
+        while (parent[c] != c) {
+            parent[c] = parent[parent[c]];
+            c = parent[c];
+        }
+        return c;
+    }
+
+    /**
+     * One independent component of the frontier and the arrangements it allows.
+     */
+    private class Component {
+
+        //the frontier squares in counting order; positions holds each one's place in it
+        private final int[] order;
+        private int[] constraints;
+        //false if the time budget ran out before the squares were ordered
+        private boolean ordered;
+
+        //ways[k] weighs arrangements with k mines and mineWays[p][k] those with p a mine;
+        //counted only in total, both have a single entry and expected is the mean mines
+        private boolean byCount;
+        private double[] ways;
+        private double[][] mineWays;
+        private double expected;
+
+        /**
+         * Creates a component, putting its squares in breadth-first order through shared
+         * counts. The search starts from the square found last by a first search, which
+         * lies at one end of the component, so few counts straddle any point of the line.
+         * @param members the frontier squares of every component, grouped by component
+         * @param from the first square of this component in {@code members}
+         * @param to the index just past its last square
+         */
+        Component(int[] members, int from, int to) {
+            order = Arrays.copyOfRange(members, from, to);
+            ordered = search(order[0]) && search(order[order.length - 1]);
+        }
+
+        /**
+         * Orders the squares breadth-first from one square.
+         * @param start the square to start from
+         * @return true if the squares were ordered; false if the time budget ran out
+         */
+        private boolean search(int start) {
+            for (int c : order) {
+                positions[c] = -1;
+            }
+            int seen = 0;
+            int head = 0;
+            int tail = 0;
+            order[tail++] = start;
+            positions[start] = 0;
+            boolean inTime = true;
+            while (head < tail) {
+                if ((head & (CHECK_EVERY - 1)) == 0 && System.nanoTime() > deadline) {
+                    inTime = false;
+                    break;
+                }
+                int c = order[head++];
+                for (int k : cellConstraints[c]) {
+                    if (constraintSeen[k]) {
+                        continue;
+                    }
+                    constraintSeen[k] = true;
+                    seenBuffer[seen++] = k;
+                    for (int other : constraintCells[k]) {
+                        if (positions[other] < 0) {
+                            positions[other] = tail;
+                            order[tail++] = other;
+                        }
+                    }
+                }
+            }
+            constraints = Arrays.copyOf(seenBuffer, seen);
+            for (int k : constraints) {
+                constraintSeen[k] = false;
+            }
+            return inTime;
+        }
+
+        /**
+         * Counts the arrangements of mines in the component, weighing each mine by the
+         * tilt. Every layer of partial counts is scaled so its largest entry is one.
+         * @param byCount true to keep the arrangements apart by number of mines, which
+         *     the exact combination needs; false to count them only in total
+         * @return true if the count finished within the budgets; false otherwise
+         */
+        boolean count(boolean byCount) {
+            this.byCount = byCount;
+            int n = order.length;
+            //the positions of the first and last square of each count
+            int[] first = new int[constraints.length];
+            int[] last = new int[constraints.length];
+            for (int k = 0; k < constraints.length; k++) {
+                if ((k & (CHECK_EVERY - 1)) == 0 && System.nanoTime() > deadline) {
+                    return false;
+                }
+                first[k] = n;
+                last[k] = -1;
+                for (int c : constraintCells[constraints[k]]) {
+                    int p = positions[c];
+                    first[k] = Math.min(first[k], p);
+                    last[k] = Math.max(last[k], p);
+                }
+            }
+            //straddling[b] lists the counts with squares on both sides of boundary b
+            int[][] straddling = new int[n + 1][];
+            int[] buffer = new int[constraints.length];
+            for (int b = 0; b <= n; b++) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                int size = 0;
+                for (int k = 0; k < constraints.length; k++) {
+                    if (first[k] < b && last[k] >= b) {
+                        buffer[size++] = k;
+                    }
+                }
+                if (size > MAX_STRADDLING) {
+                    return false;
+                }
+                straddling[b] = Arrays.copyOf(buffer, size);
+            }
+            Step[] steps = new Step[n];
+            for (int p = 0; p < n; p++) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                steps[p] = new Step(p, straddling[p], straddling[p + 1], first, last);
+            }
+            double mineWeight = Math.exp(tilt);
+            long used = 0;
+
+            //forward[b] maps the sums left of boundary b to arrangements by mine count,
+            //scaled down by exp(forwardScale[b])
+            List<Map<Long, double[]>> forward = new ArrayList<>(n + 1);
+            double[] forwardScale = new double[n + 1];
+            Map<Long, double[]> start = new HashMap<>();
+            start.put(0L, new double[] {1});
+            forward.add(start);
+            for (int p = 0; p < n; p++) {
+                Map<Long, double[]> next = new HashMap<>();
+                int length = byCount ? p + 2 : 1;
+                for (Map.Entry<Long, double[]> entry : forward.get(p).entrySet()) {
+                    for (int v = 0; v <= 1; v++) {
+                        long key = steps[p].forward(entry.getKey(), v);
+                        if (key >= 0) {
+                            double[] into = next.computeIfAbsent(key, x -> new double[length]);
+                            add(into, entry.getValue(), v, mineWeight);
+                        }
+                    }
+                }
+                used += (long) next.size() * length;
+                if (used > maxStates || System.nanoTime() > deadline) {
+                    return false;
+                }
+                forwardScale[p + 1] = forwardScale[p] + scale(next);
+                forward.add(next);
+            }
+
+            //backward[b] maps the sums still needed left of b to arrangements right of b,
+            //scaled down by exp(backwardScale[b])
+            List<Map<Long, double[]>> backward = new ArrayList<>(n + 1);
+            double[] backwardScale = new double[n + 1];
+            for (int b = 0; b <= n; b++) {
+                backward.add(null);
+            }
+            Map<Long, double[]> end = new HashMap<>();
+            end.put(0L, new double[] {1});
+            backward.set(n, end);
+            for (int p = n - 1; p >= 0; p--) {
+                Map<Long, double[]> previous = new HashMap<>();
+                int length = byCount ? n - p + 1 : 1;
+                for (Map.Entry<Long, double[]> entry : backward.get(p + 1).entrySet()) {
+                    for (int v = 0; v <= 1; v++) {
+                        long key = steps[p].backward(entry.getKey(), v);
+                        if (key >= 0) {
+                            double[] into = previous.computeIfAbsent(key,
+                                x -> new double[length]);
+                            add(into, entry.getValue(), v, mineWeight);
+                        }
+                    }
+                }
+                used += (long) previous.size() * length;
+                if (used > maxStates || System.nanoTime() > deadline) {
+                    return false;
+                }
+                backwardScale[p] = backwardScale[p + 1] + scale(previous);
+                backward.set(p, previous);
+            }
+
+            int length = byCount ? n + 1 : 1;
+            ways = forward.get(n).getOrDefault(0L, new double[length]);
+            mineWays = new double[n][];
+            expected = 0;
+            for (int p = 0; p < n; p++) {
+                double[] mine = new double[length];
+                //brings the partial counts on both sides back to the scale of ways
+                double factor = mineWeight
+                    * Math.exp(forwardScale[p] + backwardScale[p + 1] - forwardScale[n]);
+                Map<Long, double[]> after = backward.get(p + 1);
+                for (Map.Entry<Long, double[]> entry : forward.get(p).entrySet()) {
+                    long key = steps[p].forward(entry.getKey(), 1);
+                    double[] right = key < 0 ? null : after.get(key);
+                    if (right == null) {
+                        continue;
+                    } else if (System.nanoTime() > deadline) {
+                        return false;
+                    }
+                    double[] left = entry.getValue();
+                    for (int i = 0; i < left.length; i++) {
+                        if (left[i] != 0) {
+                            for (int j = 0; j < right.length; j++) {
+                                mine[byCount ? i + j + 1 : 0] += left[i] * right[j] * factor;
+                            }
+                        }
+                    }
+                }
+                mineWays[p] = mine;
+                expected += ways[0] > 0 ? mine[0] / ways[0] : 0;
+            }
+            return true;
+        }
+
+        /**
+         * Adds the partial counts of one state into another after deciding a square.
+         * @param into the counts to add to
+         * @param from the counts to add
+         * @param v one if the square is a mine; zero otherwise
+         * @param mineWeight the weight of one mine
+         */
+        private void add(double[] into, double[] from, int v, double mineWeight) {
+            double weight = v == 0 ? 1 : mineWeight;
+            int shift = byCount ? v : 0;
+            for (int k = 0; k < from.length; k++) {
+                into[k + shift] += from[k] * weight;
+            }
+        }
+
+        /**
+         * Scales a layer of partial counts so its largest entry is one.
+         * @param layer the layer to scale
+         * @return the log of the factor the layer was divided by
+         */
+        private double scale(Map<Long, double[]> layer) {
+            double max = 0;
+            for (double[] counts : layer.values()) {
+                for (double count : counts) {
+                    max = Math.max(max, count);
+                }
+            }
+            if (max == 0) {
+                return 0;
+            }
+            for (double[] counts : layer.values()) {
+                for (int k = 0; k < counts.length; k++) {
+                    counts[k] /= max;
+                }
+            }
+            return Math.log(max);
+        }
+
+        /**
+         * How deciding one square of the line changes the packed sums of the straddling
+         * counts.
+         */
+        private class Step {
+
+            //for each count straddling the boundary after the square: its slot before
+            //the square or -1, its target, and whether it covers the square
+            private final int[] fromSlot;
+            private final int[] toTargets;
+            private final boolean[] toCovers;
+            //for each count straddling the boundary before the square: its slot after
+            //the square or -1, its target, and whether it covers the square
+            private final int[] backSlot;
+            private final int[] backTargets;
+            private final boolean[] backCovers;
+            //the counts whose squares all lie on the square itself
+            private final int[] closedTargets;
+
+            /**
+             * Creates the step deciding the square at position {@code p}.
+             * @param p the position of the square
+             * @param before the counts straddling the boundary before the square
+             * @param after the counts straddling the boundary after the square
+             * @param first the position of the first square of each count
+             * @param last the position of the last square of each count
+             */
+            Step(int p, int[] before, int[] after, int[] first, int[] last) {
+                int square = order[p];
+                fromSlot = new int[after.length];
+                toTargets = new int[after.length];
+                toCovers = new boolean[after.length];
+                for (int s = 0; s < after.length; s++) {
+                    int k = after[s];
+                    fromSlot[s] = indexOf(before, k);
+                    toTargets[s] = targets[constraints[k]];
+                    toCovers[s] = covers(k, square);
+                }
+                backSlot = new int[before.length];
+                backTargets = new int[before.length];
+                backCovers = new boolean[before.length];
+                for (int s = 0; s < before.length; s++) {
+                    int k = before[s];
+                    backSlot[s] = indexOf(after, k);
+                    backTargets[s] = targets[constraints[k]];
+                    backCovers[s] = covers(k, square);
+                }
+                int closed = 0;
+                int[] buffer = new int[constraints.length];
+                for (int k = 0; k < constraints.length; k++) {
+                    if (first[k] == p && last[k] == p) {
+                        buffer[closed++] = targets[constraints[k]];
+                    }
+                }
+                closedTargets = Arrays.copyOf(buffer, closed);
+            }
+
+            /**
+             * Decides the square going forward.
+             * @param sums the sums left of the boundary before the square
+             * @param v one if the square is a mine; zero otherwise
+             * @return the sums left of the boundary after the square, or -1 if a count
+             *     cannot be met
+             */
+            long forward(long sums, int v) {
+                for (int target : closedTargets) {
+                    if (target != v) {
+                        return -1;
+                    }
+                }
+                //counts ending here must be met exactly
+                for (int s = 0; s < backSlot.length; s++) {
+                    if (backSlot[s] < 0) {
+                        int sum = slot(sums, s) + (backCovers[s] ? v : 0);
+                        if (sum != backTargets[s]) {
+                            return -1;
+                        }
+                    }
+                }
+                long next = 0;
+                for (int s = 0; s < fromSlot.length; s++) {
+                    int sum = (fromSlot[s] < 0 ? 0 : slot(sums, fromSlot[s]))
+                        + (toCovers[s] ? v : 0);
+                    if (sum > toTargets[s]) {
+                        return -1;
+                    }
+                    next |= (long) sum << (4 * s);
+                }
+                return next;
+            }
+
+            /**
+             * Decides the square going backward.
+             * @param needed the sums still needed left of the boundary after the square
+             * @param v one if the square is a mine; zero otherwise
+             * @return the sums still needed left of the boundary before the square, or -1
+             *     if a count cannot be met
+             */
+            long backward(long needed, int v) {
+                for (int target : closedTargets) {
+                    if (target != v) {
+                        return -1;
+                    }
+                }
+                //counts starting here must need nothing more to their left
+                for (int s = 0; s < fromSlot.length; s++) {
+                    if (fromSlot[s] < 0 && slot(needed, s) != (toCovers[s] ? v : 0)) {
+                        return -1;
+                    }
+                }
+                long previous = 0;
+                for (int s = 0; s < backSlot.length; s++) {
+                    int rest = backSlot[s] < 0 ? backTargets[s] : slot(needed, backSlot[s]);
+                    rest -= backCovers[s] ? v : 0;
+                    if (rest < 0) {
+                        return -1;
+                    }
+                    previous |= (long) rest << (4 * s);
+                }
+                return previous;
+            }
+
+            /**
+             * Returns one packed sum.
+             * @param sums the packed sums
+             * @param s the slot to read
+             * @return the sum in the slot
+             */
+            private int slot(long sums, int s) {
+                return (int) (sums >>> (4 * s)) & 0xF;
+            }
+
+            /**
+             * Indicates whether or not a count covers a square.
+             * @param k the count, by its index in the component
+             * @param square the frontier square
+             * @return true if the square is one of the count's squares; false otherwise
+             */
+            private boolean covers(int k, int square) {
+                for (int c : constraintCells[constraints[k]]) {
+                    if (c == square) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            /**
+             * Returns the slot of a count in a list of straddling counts.
+             * @param slots the straddling counts
+             * @param k the count to find
+             * @return its slot, or -1 if it is not in the list
+             */
+            private int indexOf(int[] slots, int k) {
+                for (int s = 0; s < slots.length; s++) {
+                    if (slots[s] == k) {
+                        return s;
+                    }
+                }
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package cs1302.game;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+
+/**
+ * The {@link cs1302.game.MinesweeperBenchmark} class times the hot paths of the game on
+ * square boards of several sizes, so that performance work can be checked against a
+ * saved baseline. It needs nothing beyond the JDK. Each benchmark is warmed up, then
+ * timed over several iterations; an iteration runs the operation in growing batches
+ * until it has taken long enough to measure, and reports the mean time per operation.
+ *
+ * <p>The benchmarks are:
+ * <ul>
+ * <li>{@code load}: constructing a {@link MinesweeperGame}, which loads its seed file;</li>
+ * <li>{@code adjacency}: {@link MinesweeperBoard#getNumAdjMines} for every square;</li>
+ * <li>{@code iswon}: {@link MinesweeperGame#isWon};</li>
+ * <li>{@code render}: drawing the mine field into a stream that discards it;</li>
+ * <li>{@code parse}: parsing a fixed mix of {@value #PARSE_LINES} typed commands, which
+ *     does not depend on the board size;</li>
+ * <li>{@code replay}: playing a recorded game end to end with {@link BatchReplay}, from
+ *     loading the seed to the last move.</li>
+ * </ul>
+ * The {@link SeedCache} is cleared before every {@code load} and {@code replay}, so they
+ * keep parsing the seed file rather than timing a cache hit.
+ *
+ * <p>Results can be saved as {@code name,size,nanosPerOp} lines and compared with a
+ * saved file; a benchmark more than the tolerance slower than its baseline is reported
+ * as a regression and makes the process exit with status 4.
+ */
+public class MinesweeperBenchmark {
+
+    /** The names of the benchmarks, in the order they run. */
+    public static final String[] BENCHMARKS = {
+        "parse", "load", "adjacency", "iswon", "render", "replay"
+    };
+
+    private static final int[] DEFAULT_SIZES = {10, 64, 256, 1024, 4096};
+    private static final int PARSE_LINES = 1024;
+    private static final String[] COMMANDS = {
+        "r 3 4", "reveal 10 12", "m 0 0", "mark 7 7", "g 1 2", "guess 5 5", "h", "help",
+        "nofog", "hint", "odds", "q", "r 3", "x 1 1", "r -1 2", "   m   12   34   "
+    };
+
+    //values computed by the benchmarks are added here so none of the work is dead code
+    private static volatile long sink;
+
+    private int warmup = 3;
+    private int iterations = 5;
+    private long iterationNanos = 200_000_000L;
+    private final PrintStream nullOut = new PrintStream(OutputStream.nullOutputStream());
+
+    /**
+     * Runs the benchmarks.
+     * @param args contains the options described by the usage message
+     */
+    public static void main(String[] args) {
+        String usage = "Usage: MinesweeperBenchmark [--sizes N,N,...] [--only NAME,NAME,...]"
+            + " [--warmup N] [--iterations N] [--time-ms N] [--save FILE]"
+            + " [--baseline FILE] [--tolerance FRACTION]";
+        MinesweeperBenchmark benchmark = new MinesweeperBenchmark();
+        int[] sizes = DEFAULT_SIZES;
+        List<String> only = List.of(BENCHMARKS);
+        String save = null;
+        String baseline = null;
+        double tolerance = 0.2;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                if (value == null) {
+                    throw new IllegalArgumentException(args[i]);
+                }
+                switch (args[i++]) {
+                case "--sizes":
+                    String[] parts = value.split(",");
+                    sizes = new int[parts.length];
+                    for (int k = 0; k < parts.length; k++) {
+                        sizes[k] = Integer.parseInt(parts[k].trim());
+                    }
+                    break;
+                case "--only":
+                    only = List.of(value.split(","));
+                    break;
+                case "--warmup":
+                    benchmark.warmup = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    benchmark.iterations = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--time-ms":
+                    benchmark.iterationNanos = Long.parseLong(value) * 1_000_000L;
+                    break;
+                case "--save":
+                    save = value;
+                    break;
+                case "--baseline":
+                    baseline = value;
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException(args[i - 1]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(usage);
+            System.exit(1);
+        }
+        try {
+            Map<String, Double> results = benchmark.run(sizes, only);
+            if (save != null) {
+                StringBuilder lines = new StringBuilder();
+                for (Map.Entry<String, Double> result : results.entrySet()) {
+                    lines.append(result.getKey()).append(',')
+                        .append(String.format(Locale.ROOT, "%.1f", result.getValue()))
+                        .append('\n');
+                }
+                Files.write(new File(save).toPath(),
+                    lines.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (baseline != null && compare(results, baseline, tolerance) > 0) {
+                System.exit(4);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid Benchmark Size: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Benchmark I/O Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Runs the chosen benchmarks on every size and prints one line per result.
+     * @param sizes the numbers of rows and columns of the boards
+     * @param only the names of the benchmarks to run
+     * @return the nanoseconds per operation, keyed by {@code name,size} in running order
+     * @throws IOException if the seed files cannot be written or read
+     */
+    public Map<String, Double> run(int[] sizes, List<String> only) throws IOException {
+        Map<String, Double> results = new LinkedHashMap<>();
+        File directory = Files.createTempDirectory("minesweeper-bench").toFile();
+        try {
+            System.out.printf("%-10s %11s %16s %9s%n", "benchmark", "size", "ns/op", "error");
+            if (only.contains("parse")) {
+                String[] lines = new String[PARSE_LINES];
+                for (int k = 0; k < lines.length; k++) {
+                    lines[k] = COMMANDS[k % COMMANDS.length];
+                }
+                CommandParser parser = new CommandParser();
+                results.put("parse,0", report("parse", "-", () -> {
+                    long total = 0;
+                    for (String line : lines) {
+                        total += parser.parse(line);
+                    }
+                    return total;
+                }));
+            }
+            for (int size : sizes) {
+                runSize(size, only, directory, results);
+            }
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+        return results;
+    }
+
+    /**
+     * Runs the board benchmarks on one size.
+     * @param size the number of rows and columns
+     * @param only the names of the benchmarks to run
+     * @param directory the directory to write the seed and script to
+     * @param results the map the results are added to
+     * @throws IOException if the seed or script cannot be written or read
+     */
+    private void runSize(int size, List<String> only, File directory,
+        Map<String, Double> results) throws IOException {
+        String label = size + "x" + size;
+        //a tenth of the squares are mines, and the middle square opens an area
+        SeedGenerator generator = new SeedGenerator(size, size, size * size / 10);
+        generator.setFirstClick(size / 2, size / 2);
+        MinesweeperBoard board = generator.generate(new SplittableRandom(size), null);
+        File seed = new File(directory, "game-" + size + BatchReplay.SEED_EXTENSION);
+        try (OutputStream out = Files.newOutputStream(seed.toPath())) {
+            SeedConverter.writeText(board, out);
+        }
+        //plays the board once with the solver to record a script, which leaves the board
+        //part way through a game for the render benchmark
+        File script = new File(directory, "game-" + size + BatchReplay.SCRIPT_EXTENSION);
+        Files.write(script.toPath(), record(board).getBytes(StandardCharsets.US_ASCII));
+
+        if (only.contains("load")) {
+            String path = seed.getPath();
+            results.put("load," + size, report("load", label, () -> {
+                SeedCache.getDefault().clear();
+                MinesweeperGame game = new MinesweeperGame(new Scanner(""), path);
+                return game.isWon() ? 1 : 0;
+            }));
+        }
+        if (only.contains("adjacency")) {
+            results.put("adjacency," + size, report("adjacency", label, () -> {
+                long total = 0;
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < size; j++) {
+                        total += board.getNumAdjMines(i, j);
+                    }
+                }
+                return total;
+            }));
+        }
+        if (only.contains("iswon")) {
+            MinesweeperGame game = new MinesweeperGame(new Scanner(""), seed.getPath());
+            results.put("iswon," + size, report("iswon", label, () -> game.isWon() ? 1 : 0));
+        }
+        if (only.contains("render")) {
+            BoardRenderer renderer = new BoardRenderer(board);
+            results.put("render," + size, report("render", label, () -> {
+                renderer.print(nullOut, false);
+                return 1;
+            }));
+        }
+        if (only.contains("replay")) {
+            BatchReplay replay = new BatchReplay();
+            results.put("replay," + size, report("replay", label, () -> {
+                SeedCache.getDefault().clear();
+                return replay.play(seed, script, false).getRoundsCompleted();
+            }));
+        }
+        seed.delete();
+        script.delete();
+    }
+
+    /**
+     * Plays a board from its middle square with the solver and returns the moves made as
+     * a command script.
+     * @param board the board to play
+     * @return the script, one command per line
+     */
+    private static String record(MinesweeperBoard board) {
+        MinesweeperEngine engine = new MinesweeperEngine(board);
+        StringBuilder script = new StringBuilder();
+        int middle = board.getRows() / 2;
+        script.append("r ").append(middle).append(' ').append(board.getCols() / 2).append('\n');
+        engine.reveal(middle, board.getCols() / 2);
+        MinesweeperSolver solver = new MinesweeperSolver(engine);
+        while (engine.getStatus() == MinesweeperEngine.PLAYING) {
+            int move = solver.findMove();
+            if (move == CommandParser.MARK) {
+                script.append("m ");
+                engine.mark(solver.getMoveRow(), solver.getMoveCol());
+            } else if (move == CommandParser.REVEAL) {
+                script.append("r ");
+                engine.reveal(solver.getMoveRow(), solver.getMoveCol());
+            } else {
+                break;
+            }
+            script.append(solver.getMoveRow()).append(' ').append(solver.getMoveCol())
+                .append('\n');
+        }
+        board.removeListener(solver);
+        return script.toString();
+    }
+
+    /**
+     * Warms up and times one benchmark, then prints its result.
+     * @param name the name of the benchmark
+     * @param label the board size shown in the result
+     * @param operation the operation to time
+     * @return the mean nanoseconds per operation
+     * @throws IOException if the operation fails
+     */
+    private double report(String name, String label, Operation operation) throws IOException {
+        for (int k = 0; k < warmup; k++) {
+            measure(operation);
+        }
+        double[] samples = new double[iterations];
+        double mean = 0;
+        for (int k = 0; k < iterations; k++) {
+            samples[k] = measure(operation);
+            mean += samples[k] / iterations;
+        }
+        double variance = 0;
+        for (double sample : samples) {
+            variance += (sample - mean) * (sample - mean) / iterations;
+        }
+        System.out.printf("%-10s %11s %16.1f %8.1f%%%n", name, label, mean,
+            mean == 0 ? 0 : 100 * Math.sqrt(variance) / mean);
+        return mean;
+    }
+
+    /**
+     * Runs an operation in batches that double in size until an iteration's worth of
+     * time has passed.
+     * @param operation the operation to time
+     * @return the nanoseconds per operation
+     * @throws IOException if the operation fails
+     */
+    private double measure(Operation operation) throws IOException {
+        long total = 0;
+        long operations = 0;
+        long batch = 1;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (long k = 0; k < batch; k++) {
+                total += operation.run();
+            }
+            operations += batch;
+            elapsed = System.nanoTime() - start;
+            //calling nanoTime after every tiny operation would swamp what it measures
+            if (elapsed < iterationNanos / 16) {
+                batch *= 2;
+            }
+        } while (elapsed < iterationNanos);
+        sink += total;
+        return (double) elapsed / operations;
+    }
+
+    /**
+     * Compares results with a saved baseline and prints the change of each one.
+     * @param results the results of this run
+     * @param baselinePath the file of saved results
+     * @param tolerance the fraction by which a benchmark may be slower
+     * @return the number of regressions
+     * @throws IOException if the baseline cannot be read
+     */
+    private static int compare(Map<String, Double> results, String baselinePath,
+        double tolerance) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        try (BufferedReader lines = new BufferedReader(new StringReader(
+            new String(Files.readAllBytes(new File(baselinePath).toPath()),
+            StandardCharsets.UTF_8)))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                int comma = line.lastIndexOf(',');
+                if (comma > 0) {
+                    baseline.put(line.substring(0, comma),
+                        Double.parseDouble(line.substring(comma + 1)));
+                }
+            }
+        }
+        int regressions = 0;
+        System.out.println();
+        System.out.printf("%-22s %16s %16s %9s%n", "compared to baseline", "baseline ns/op",
+            "ns/op", "change");
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            Double before = baseline.get(result.getKey());
+            if (before == null) {
+                continue;
+            }
+            double change = result.getValue() / before - 1;
+            boolean regressed = change > tolerance;
+            regressions += regressed ? 1 : 0;
+            System.out.printf("%-22s %16.1f %16.1f %+8.1f%%%s%n", result.getKey(), before,
+                result.getValue(), 100 * change, regressed ? "  REGRESSION" : "");
+        }
+        return regressions;
+    }
+
+    /**
+     * An operation to time.
+     */
+    private interface Operation {
+
+        /**
+         * Runs the operation once.
+         * @return a value derived from the work done, so that it cannot be skipped
+         * @throws IOException if the operation fails
+         */
+        long run() throws IOException;
+    }
+}
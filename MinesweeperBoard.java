@@ -0,0 +1,794 @@
+package cs1302.game;
+
+import java.util.Arrays;
+
+/**
+ * The {@link cs1302.game.MinesweeperBoard} class stores the mine field of a game.
+ * Every square is packed into a single byte which holds whether the square is a mine,
+ * whether it has been revealed, flagged or guessed, and its adjacent mine count.
+ * Squares are only turned into glyphs when the board is printed.
+ *
+ * <p>The squares are kept in fixed-size chunks that are allocated the first time a
+ * square inside them changes, so large regions of a big board that nobody has touched
+ * cost only one empty chunk reference.
+ *
+ * <p>Chunks are also what snapshots share. {@link #snapshot} hands out a second board
+ * over the same chunks without copying any of them, and from then on each board copies
+ * a chunk the first time it writes to it. The chunk references are themselves kept in
+ * groups of 64, shared and copied the same way. A snapshot therefore costs a few
+ * fields, and the boards only grow apart by the chunks and groups that are changed
+ * afterwards, plus one copy of the table of groups, a few bytes per quarter million
+ * squares.
+ */
+public class MinesweeperBoard {
+
+    /** Bits of a square that hold the number of adjacent mines. */
+    public static final int COUNT_MASK = 0x0F;
+    /** Bit set when the square contains a mine. */
+    public static final int MINE = 0x10;
+    /** Bit set when the square has been revealed. */
+    public static final int REVEALED = 0x20;
+    /** Bit set when the square has been marked with a flag. */
+    public static final int FLAG = 0x40;
+    /** Bit set when the square has been marked with a guess. */
+    public static final int GUESS = 0x80;
+    /** Bits that describe what the player has done to a square. */
+    public static final int STATE_MASK = REVEALED | FLAG | GUESS;
+
+    /** The largest number of squares a board may hold. */
+    public static final int MAX_SQUARES = Integer.MAX_VALUE - 8;
+
+    /** The value a hash made with {@link #hash(long, long)} starts from. */
+    static final long HASH_BASIS = 0xcbf29ce484222325L;
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int GROUP_BITS = 6;
+    private static final int GROUP_SIZE = 1 << GROUP_BITS;
+    private static final int GROUP_MASK = GROUP_SIZE - 1;
+    private static final int GROUP_SHIFT = CHUNK_BITS + GROUP_BITS;
+
+    private static final String BLANK_GLYPH = "   ";
+    private static final String FLAG_GLYPH = " F ";
+    private static final String GUESS_GLYPH = " ? ";
+    private static final String[] COUNT_GLYPHS = {
+        " 0 ", " 1 ", " 2 ", " 3 ", " 4 ", " 5 ", " 6 ", " 7 ", " 8 "
+    };
+    private static final String NO_FOG_BLANK_GLYPH = "< >";
+    private static final String NO_FOG_FLAG_GLYPH = "< F>";
+    private static final String NO_FOG_GUESS_GLYPH = "< ?>";
+
+    private final int rows;
+    private final int cols;
+    private final int squares;
+    private final int chunkCount;
+    //groups of chunk references, all allocated up front so a read never finds one missing
+    private byte[][][] groups;
+    private int mineCount = 0;
+
+    //set once the chunks are shared with a snapshot; shared groups and chunks are copied
+    //before their first write, and owned holds a bit for each chunk of a group that this
+    //board has copied since, so a group with any bit set has been copied as well
+    private boolean shared = false;
+    private boolean sharedTable = false;
+    private long[] owned;
+
+    //running totals kept up to date by every state change so a win is checked in O(1)
+    private int hiddenSafeCount;
+    private int correctFlagCount = 0;
+    private int wrongFlagCount = 0;
+    private int guessCount = 0;
+
+    //reusable ring buffer for opening empty regions, grown only when a region outgrows it
+    private int[] work = new int[16];
+
+    private Listener[] listeners = new Listener[0];
+
+    /**
+     * A {@link Listener} is told about every square whose state changes, for example
+     * so that only changed squares need to be drawn again.
+     */
+    public interface Listener {
+
+        /**
+         * Called after the state of a square has changed.
+         * @param index the flat index ({@code row * cols + col}) of the square
+         */
+        void squareChanged(int index);
+    }
+
+    /**
+     * Creates an empty board with no mines and no revealed squares.
+     * @param rows of type int which specifies the number of rows
+     * @param cols of type int which specifies the number of columns
+     */
+    public MinesweeperBoard(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.squares = rows * cols;
+        this.chunkCount = (int) (((long) squares + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        this.groups = newGroups();
+        this.hiddenSafeCount = squares;
+    }
+
+    /**
+     * Creates a board over the same chunks as {@code source}.
+     * @param source the board to share the chunks of
+     */
+    private MinesweeperBoard(MinesweeperBoard source) {
+        this.rows = source.rows;
+        this.cols = source.cols;
+        this.squares = source.squares;
+        this.chunkCount = source.chunkCount;
+        copyState(source);
+    }
+
+    /**
+     * Indicates whether or not a board of the given size can be stored.
+     * @param rows of type int which specifies the number of rows
+     * @param cols of type int which specifies the number of columns
+     * @return true if both sizes are positive and the square count fits; false otherwise
+     */
+    public static boolean isValidSize(int rows, int cols) {
+        return rows > 0 && cols > 0 && (long) rows * cols <= MAX_SQUARES;
+    }
+
+    /**
+     * Empties the board so it can hold another game of the same size. Chunks that were
+     * already allocated are kept and zeroed, so reusing a board allocates nothing.
+     */
+    public void clear() {
+        if (shared) {
+            //the chunks may belong to a snapshot too, so they are dropped instead
+            groups = newGroups();
+            shared = false;
+            sharedTable = false;
+            owned = null;
+        }
+        for (byte[][] group : groups) {
+            for (byte[] chunk : group) {
+                if (chunk != null) {
+                    Arrays.fill(chunk, (byte) 0);
+                }
+            }
+        }
+        mineCount = 0;
+        hiddenSafeCount = squares;
+        correctFlagCount = 0;
+        wrongFlagCount = 0;
+        guessCount = 0;
+    }
+
+    /**
+     * Returns a copy of the board as it is now, without copying any squares. The copy is a
+     * board of its own that can be played on, and neither board sees what happens to the
+     * other afterwards. Listeners are not copied.
+     * @return the copy
+     */
+    public MinesweeperBoard snapshot() {
+        shareChunks();
+        return new MinesweeperBoard(this);
+    }
+
+    /**
+     * Makes this board the same as a snapshot of a board of the same size, without
+     * copying any squares. Listeners are told about every square whose state differs.
+     * @param snapshot the board to return to
+     * @throws IllegalArgumentException if the snapshot has a different size
+     */
+    public void restore(MinesweeperBoard snapshot) {
+        if (snapshot.rows != rows || snapshot.cols != cols) {
+            throw new IllegalArgumentException("Cannot restore a " + snapshot.rows + " by "
+                + snapshot.cols + " board onto a " + rows + " by " + cols + " board");
+        }
+        byte[][][] before = groups;
+        snapshot.shareChunks();
+        copyState(snapshot);
+        if (listeners.length == 0) {
+            return;
+        }
+        //only groups and chunks that are not shared can hold squares that changed
+        for (int g = 0; g < groups.length; g++) {
+            byte[][] old = before[g];
+            byte[][] group = groups[g];
+            if (old == group) {
+                continue;
+            }
+            for (int slot = 0; slot < group.length; slot++) {
+                if (old[slot] != group[slot]) {
+                    notifyChanged(old[slot], (g << GROUP_BITS) + slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells the listeners about every square of a chunk whose state differs from what it
+     * was in an old copy of the chunk.
+     * @param old the old copy of the chunk, or null if it was never allocated
+     * @param chunkIndex the index of the chunk
+     */
+    private void notifyChanged(byte[] old, int chunkIndex) {
+        int start = chunkIndex << CHUNK_BITS;
+        int end = Math.min(start + CHUNK_SIZE, squares);
+        for (int index = start; index < end; index++) {
+            int before = old == null ? 0 : old[index & CHUNK_MASK];
+            if (((before ^ read(index)) & STATE_MASK) != 0) {
+                for (Listener listener : listeners) {
+                    listener.squareChanged(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks every chunk of the board as shared, so the next write to each copies it.
+     */
+    private void shareChunks() {
+        shared = true;
+        sharedTable = true;
+        owned = null;
+    }
+
+    /**
+     * Takes over the squares and running totals of a board whose chunks are shared.
+     * @param source the board to take the state of
+     */
+    private void copyState(MinesweeperBoard source) {
+        groups = source.groups;
+        shared = true;
+        sharedTable = true;
+        owned = null;
+        mineCount = source.mineCount;
+        hiddenSafeCount = source.hiddenSafeCount;
+        correctFlagCount = source.correctFlagCount;
+        wrongFlagCount = source.wrongFlagCount;
+        guessCount = source.guessCount;
+    }
+
+    /**
+     * Registers a listener to be told about every square whose state changes.
+     * @param listener the listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    /**
+     * Stops telling a listener about changes. Nothing happens if it was never added.
+     * @param listener the listener to remove
+     */
+    public void removeListener(Listener listener) {
+        for (int k = 0; k < listeners.length; k++) {
+            if (listeners[k] == listener) {
+                Listener[] rest = new Listener[listeners.length - 1];
+                System.arraycopy(listeners, 0, rest, 0, k);
+                System.arraycopy(listeners, k + 1, rest, k, rest.length - k);
+                listeners = rest;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of chunks that have been allocated so far.
+     * @return the number of allocated chunks
+     */
+    public int getAllocatedChunks() {
+        int allocated = 0;
+        for (byte[][] group : groups) {
+            for (byte[] chunk : group) {
+                if (chunk != null) {
+                    allocated++;
+                }
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Returns the packed bits stored at a flat index.
+     * Squares in chunks that were never allocated read as zero.
+     * @param index the flat index of the square
+     * @return the packed bits of the square
+     */
+    private int read(int index) {
+        byte[] chunk = groups[index >>> GROUP_SHIFT][(index >>> CHUNK_BITS) & GROUP_MASK];
+        return chunk == null ? 0 : chunk[index & CHUNK_MASK] & 0xFF;
+    }
+
+    /**
+     * Returns a table of empty groups, one reference for every chunk of the board.
+     * @return the groups
+     */
+    private byte[][][] newGroups() {
+        byte[][][] table = new byte[(chunkCount + GROUP_SIZE - 1) >>> GROUP_BITS][][];
+        for (int g = 0; g < table.length; g++) {
+            table[g] = new byte[Math.min(GROUP_SIZE, chunkCount - (g << GROUP_BITS))][];
+        }
+        return table;
+    }
+
+    /**
+     * Stores packed bits at a flat index, allocating its chunk when first needed.
+     * Writing zero into a chunk that was never allocated does nothing.
+     * @param index the flat index of the square
+     * @param cell the packed bits to store
+     */
+    private void write(int index, int cell) {
+        int chunkIndex = index >>> CHUNK_BITS;
+        int groupIndex = chunkIndex >>> GROUP_BITS;
+        if (shared && (owned == null || (owned[groupIndex] & (1L << chunkIndex)) == 0)) {
+            if (read(index) == cell) {
+                return;
+            }
+            claim(groupIndex, chunkIndex);
+        }
+        byte[][] group = groups[groupIndex];
+        byte[] chunk = group[chunkIndex & GROUP_MASK];
+        if (chunk == null) {
+            if (cell == 0) {
+                return;
+            }
+            int start = chunkIndex << CHUNK_BITS;
+            chunk = new byte[Math.min(CHUNK_SIZE, squares - start)];
+            group[chunkIndex & GROUP_MASK] = chunk;
+        }
+        chunk[index & CHUNK_MASK] = (byte) cell;
+    }
+
+    /**
+     * Gives this board its own copy of a chunk it shares with a snapshot, along with its
+     * own copy of the chunk's group and of the table of groups if it still shares them.
+     * The table of groups holds one reference per 64 chunks, so copying it stays cheap
+     * even on the largest boards.
+     * @param groupIndex the index of the chunk's group
+     * @param chunkIndex the index of the chunk
+     */
+    private void claim(int groupIndex, int chunkIndex) {
+        if (sharedTable) {
+            groups = groups.clone();
+            sharedTable = false;
+        }
+        if (owned == null) {
+            owned = new long[groups.length];
+        }
+        byte[][] group = groups[groupIndex];
+        if (owned[groupIndex] == 0) {
+            group = group.clone();
+            groups[groupIndex] = group;
+        }
+        int slot = chunkIndex & GROUP_MASK;
+        if (group[slot] != null) {
+            group[slot] = group[slot].clone();
+        }
+        owned[groupIndex] |= 1L << chunkIndex;
+    }
+
+    /**
+     * Returns the number of rows on the board.
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns on the board.
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of distinct squares that contain a mine.
+     * @return the number of mines on the board
+     */
+    public int getMineCount() {
+        return mineCount;
+    }
+
+    /**
+     * Returns the number of squares without a mine that have not been revealed yet.
+     * @return the number of hidden safe squares
+     */
+    public int getHiddenSafeCount() {
+        return hiddenSafeCount;
+    }
+
+    /**
+     * Returns the number of squares that have been revealed.
+     * @return the number of revealed squares
+     */
+    public int getRevealedCount() {
+        return squares - mineCount - hiddenSafeCount;
+    }
+
+    /**
+     * Returns the number of flags on the board, whether or not they are on mines.
+     * @return the number of flags
+     */
+    public int getFlagCount() {
+        return correctFlagCount + wrongFlagCount;
+    }
+
+    /**
+     * Returns the number of flags placed on squares that contain a mine.
+     * @return the number of correct flags
+     */
+    public int getCorrectFlagCount() {
+        return correctFlagCount;
+    }
+
+    /**
+     * Returns the number of flags placed on squares that do not contain a mine.
+     * @return the number of wrong flags
+     */
+    public int getWrongFlagCount() {
+        return wrongFlagCount;
+    }
+
+    /**
+     * Returns the number of squares currently marked with a guess.
+     * @return the number of guesses
+     */
+    public int getGuessCount() {
+        return guessCount;
+    }
+
+    /**
+     * Returns the packed bits of a square.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return the packed bits of the square
+     */
+    public int get(int row, int col) {
+        return read(row * cols + col);
+    }
+
+    /**
+     * Places a mine on a square. Placing a mine twice has no further effect.
+     * {@link #computeAdjacency} must be called once all mines have been placed.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     */
+    public void placeMine(int row, int col) {
+        int index = row * cols + col;
+        int cell = read(index);
+        if ((cell & MINE) == 0) {
+            write(index, cell | MINE);
+            mineCount++;
+            hiddenSafeCount--;
+        }
+    }
+
+    /**
+     * Mixes a value into a 64-bit FNV-1a hash, which starts from {@link #HASH_BASIS}.
+     * @param hash the hash so far
+     * @param value the value to mix in
+     * @return the new hash
+     */
+    static long hash(long hash, long value) {
+        return (hash ^ value) * HASH_PRIME;
+    }
+
+    /**
+     * Mixes the flat index of every mine, in ascending order, into a hash, which then
+     * identifies where the mines are.
+     * @param hash the hash so far
+     * @return the new hash
+     */
+    long hashMines(long hash) {
+        for (int index = nextMine(0); index >= 0; index = nextMine(index + 1)) {
+            hash = hash(hash, index);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the flat index ({@code row * cols + col}) of the first mine at or after
+     * {@code fromIndex}. Chunks that were never allocated are skipped whole.
+     * @param fromIndex the flat index to start searching from
+     * @return the flat index of the next mine, or -1 if there are no more mines
+     */
+    public int nextMine(int fromIndex) {
+        for (int index = fromIndex; index < squares; index++) {
+            byte[] chunk = groups[index >>> GROUP_SHIFT][(index >>> CHUNK_BITS) & GROUP_MASK];
+            if (chunk == null) {
+                index |= CHUNK_MASK;
+            } else if ((chunk[index & CHUNK_MASK] & MINE) != 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the flat index of the first square at or after {@code fromIndex} that has
+     * been revealed, flagged or marked as a guess. Chunks that were never allocated are
+     * skipped whole.
+     * @param fromIndex the flat index to start searching from
+     * @return the flat index of the next such square, or -1 if there are no more
+     */
+    public int nextWithState(int fromIndex) {
+        for (int index = fromIndex; index < squares; index++) {
+            byte[] chunk = groups[index >>> GROUP_SHIFT][(index >>> CHUNK_BITS) & GROUP_MASK];
+            if (chunk == null) {
+                index |= CHUNK_MASK;
+            } else if ((chunk[index & CHUNK_MASK] & STATE_MASK) != 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates whether or not the square contains a mine.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return true if the square contains a mine; false otherwise
+     */
+    public boolean isMine(int row, int col) {
+        return (read(row * cols + col) & MINE) != 0;
+    }
+
+    /**
+     * Indicates whether or not the square has been marked with a flag.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return true if the square is flagged; false otherwise
+     */
+    public boolean isFlagged(int row, int col) {
+        return (read(row * cols + col) & FLAG) != 0;
+    }
+
+    /**
+     * Stores the number of adjacent mines in every square of the board.
+     * Each row is first summed three squares wide, then the sums of the rows above
+     * and below are added, so the whole table is built in a single pass.
+     */
+    public void computeAdjacency() {
+        int[] above = new int[cols];
+        int[] current = new int[cols];
+        int[] below = new int[cols];
+        if (rows > 0) {
+            sumRow(0, current);
+        }
+        if (rows > 1) {
+            sumRow(1, below);
+        }
+        for (int i = 0; i < rows; i++) {
+            int base = i * cols;
+            for (int j = 0; j < cols; j++) {
+                int cell = read(base + j);
+                //the square's own mine is part of its row sum, so it is taken back out
+                int count = above[j] + current[j] + below[j] - ((cell & MINE) >> 4);
+                write(base + j, (cell & ~COUNT_MASK) | count);
+            }
+            int[] spare = above;
+            above = current;
+            current = below;
+            below = spare;
+            if (i + 2 < rows) {
+                sumRow(i + 2, below);
+            } else {
+                Arrays.fill(below, 0);
+            }
+        }
+    }
+
+    /**
+     * Stores in {@code sums} the number of mines in each square of a row plus its
+     * left and right neighbours.
+     * @param row the row index to sum
+     * @param sums the array receiving one sum per column
+     */
+    private void sumRow(int row, int[] sums) {
+        if (cols == 0) {
+            return;
+        }
+        int base = row * cols;
+        int prev = 0;
+        int cur = (read(base) & MINE) >> 4;
+        for (int j = 0; j < cols; j++) {
+            int next = j + 1 < cols ? (read(base + j + 1) & MINE) >> 4 : 0;
+            sums[j] = prev + cur + next;
+            prev = cur;
+            cur = next;
+        }
+    }
+
+    /**
+     * Returns the number of mines adjacent to the specified square.
+     * The count is read from the table built by {@link #computeAdjacency}.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return the number of adjacent mines
+     */
+    public int getNumAdjMines(int row, int col) {
+        return read(row * cols + col) & COUNT_MASK;
+    }
+
+    /**
+     * Reveals a square. Any flag or guess on the square is removed.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     */
+    public void reveal(int row, int col) {
+        setState(row * cols + col, REVEALED);
+    }
+
+    /**
+     * Reveals a square and, when it has no adjacent mines, the whole connected region
+     * of empty squares around it together with the numbered squares on its border.
+     * Flagged squares are left alone. The region is opened breadth first using a
+     * reusable ring buffer, so very large regions need neither recursion nor new arrays,
+     * and the buffer only ever holds the current edge of the region.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return the number of squares that were newly revealed
+     */
+    public int revealArea(int row, int col) {
+        int start = row * cols + col;
+        int opened = (read(start) & REVEALED) == 0 ? 1 : 0;
+        setState(start, REVEALED);
+        if ((read(start) & (MINE | COUNT_MASK)) != 0) {
+            return opened;
+        }
+        int head = 0;
+        int size = 0;
+        work[0] = start;
+        size++;
+        while (size > 0) {
+            int index = work[head];
+            head = (head + 1) & (work.length - 1);
+            size--;
+            int r = index / cols;
+            int c = index - r * cols;
+            int rowEnd = Math.min(r + 1, rows - 1);
+            int colEnd = Math.min(c + 1, cols - 1);
+            for (int i = Math.max(r - 1, 0); i <= rowEnd; i++) {
+                for (int j = Math.max(c - 1, 0); j <= colEnd; j++) {
+                    int next = i * cols + j;
+                    int cell = read(next);
+                    if ((cell & (REVEALED | FLAG)) != 0) {
+                        continue;
+                    }
+                    setState(next, REVEALED);
+                    opened++;
+                    //only empty squares keep spreading the region
+                    if ((cell & COUNT_MASK) == 0) {
+                        if (size == work.length) {
+                            head = growWork(head);
+                        }
+                        work[(head + size) & (work.length - 1)] = next;
+                        size++;
+                    }
+                }
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Doubles the capacity of the full work ring buffer, unrolling it so the
+     * oldest entry ends up at the front.
+     * @param head the position of the oldest entry
+     * @return the new position of the oldest entry, which is always zero
+     */
+    private int growWork(int head) {
+        int[] grown = new int[work.length * 2];
+        int firstPart = work.length - head;
+        System.arraycopy(work, head, grown, 0, firstPart);
+        System.arraycopy(work, 0, grown, firstPart, head);
+        work = grown;
+        return 0;
+    }
+
+    /**
+     * Marks a square with a flag, replacing whatever was shown on it.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     */
+    public void mark(int row, int col) {
+        setState(row * cols + col, FLAG);
+    }
+
+    /**
+     * Marks a square with a guess, replacing whatever was shown on it.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     */
+    public void guess(int row, int col) {
+        setState(row * cols + col, GUESS);
+    }
+
+    /**
+     * Replaces the player state bits of a square, keeping its mine bit and count.
+     * The running totals are adjusted for the state being left and the state entered.
+     * @param index the flat index of the square
+     * @param state the new state bits
+     */
+    private void setState(int index, int state) {
+        int cell = read(index);
+        boolean mine = (cell & MINE) != 0;
+        count(cell & STATE_MASK, mine, -1);
+        count(state, mine, 1);
+        write(index, (cell & (MINE | COUNT_MASK)) | state);
+        if ((cell & STATE_MASK) != state) {
+            for (Listener listener : listeners) {
+                listener.squareChanged(index);
+            }
+        }
+    }
+
+    /**
+     * Adds {@code delta} to the running total that a square's state belongs to.
+     * @param state the state bits of the square
+     * @param mine whether or not the square contains a mine
+     * @param delta the amount to add, either 1 or -1
+     */
+    private void count(int state, boolean mine, int delta) {
+        if (state == FLAG) {
+            if (mine) {
+                correctFlagCount += delta;
+            } else {
+                wrongFlagCount += delta;
+            }
+        } else if (state == GUESS) {
+            guessCount += delta;
+        }
+        if (!mine && state != REVEALED) {
+            hiddenSafeCount += delta;
+        }
+    }
+
+    /**
+     * Indicates whether or not every mine is flagged and every other square is revealed.
+     * @return true if the board is solved; false otherwise
+     */
+    public boolean isSolved() {
+        return hiddenSafeCount == 0 && wrongFlagCount == 0 && correctFlagCount == mineCount;
+    }
+
+    /**
+     * Returns the glyph shown for a square while the fog of war is up.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return the three character glyph of the square
+     */
+    public String glyph(int row, int col) {
+        int cell = read(row * cols + col);
+        if ((cell & FLAG) != 0) {
+            return FLAG_GLYPH;
+        } else if ((cell & GUESS) != 0) {
+            return GUESS_GLYPH;
+        } else if ((cell & REVEALED) != 0) {
+            return COUNT_GLYPHS[cell & COUNT_MASK];
+        }
+        return BLANK_GLYPH;
+    }
+
+    /**
+     * Returns the glyph shown for a square when the fog of war is removed.
+     * Mines have less-than and greater-than symbols placed around their glyph.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return the glyph of the square
+     */
+    public String noFogGlyph(int row, int col) {
+        int cell = read(row * cols + col);
+        if ((cell & MINE) == 0) {
+            return glyph(row, col);
+        } else if ((cell & FLAG) != 0) {
+            return NO_FOG_FLAG_GLYPH;
+        } else if ((cell & GUESS) != 0) {
+            return NO_FOG_GUESS_GLYPH;
+        }
+        return NO_FOG_BLANK_GLYPH;
+    }
+}
@@ -1,8 +1,13 @@
 package cs1302.game;
 
+import java.util.Arrays;
 import java.util.Scanner;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import javax.management.JMException;
 
 /**
  * A driver class that creates a {@link MinesweeperGame} object. This class
@@ -10,25 +15,155 @@ import java.io.FileNotFoundException;
  */
 public class MinesweeperDriver {
 
+    //how often a game played with --metrics rewrites its metrics file
+    private static final long METRICS_PERIOD_SECONDS = 5;
+
     /**
      * Main method in which the scanner object {@code stdIn} is created.
      * Checks whether multiple arguments are entered and displays error message if yes.
+     * The seed file may be a text seed or a binary seed written by {@link SeedConverter};
+     * its format is detected automatically. With {@code --ansi} in front of the seed
+     * file, only the changed parts of the board are redrawn each round. With
+     * {@code --metrics FILE}, the game is timed by a {@link GameMetrics}, which is
+     * registered with JMX and written to the file every few seconds and at the end. With
+     * {@code --journal FILE}, the game is saved to the file as it is played, and a game
+     * saved there before is resumed. With {@code --scores FILE}, the result of the game
+     * is recorded in a {@link ScoreStore}, and {@code --leaderboard FILE QUERY} prints a
+     * query over such a store instead of playing; {@code --fuzz GAMES} stress tests the
+     * game with a {@link GameFuzzer} instead. With
+     * {@code --parallel SCRIPT_DIR [THREADS]}, the recorded games in the directory are
+     * played on all cores by a {@link ParallelRunner} instead, and with
+     * {@code --server PORT SEED_FILE_PATH} the seed is played by every player who
+     * connects to a {@link MinesweeperServer} on the port. The game prints through an
+     * {@link AsyncOutput}, so it never waits on the terminal.
      * @param args contains the supplied command-line arguments as an array of String objects
      */
     public static void main(String[] args) {
 
+        if (args.length > 1 && args[0].equals("--parallel")) {
+            ParallelRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--server")) {
+            MinesweeperServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--leaderboard")) {
+            ScoreStore.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--fuzz")) {
+            GameFuzzer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         //creates the standard input Scanner object
         Scanner stdIn = new Scanner(System.in);
 
+        //leading options come before the seed file
+        boolean useAnsi = false;
+        String metricsPath = null;
+        String journalPath = null;
+        String scoresPath = null;
+        int next = 0;
+        while (next < args.length - 1) {
+            if (args[next].equals("--ansi")) {
+                useAnsi = true;
+                next++;
+            } else if (args[next].equals("--metrics") && next + 2 < args.length) {
+                metricsPath = args[next + 1];
+                next += 2;
+            } else if (args[next].equals("--journal") && next + 2 < args.length) {
+                journalPath = args[next + 1];
+                next += 2;
+            } else if (args[next].equals("--scores") && next + 2 < args.length) {
+                scoresPath = args[next + 1];
+                next += 2;
+            } else {
+                break;
+            }
+        }
+
         //if multiple arguments are entered, an error message is displayed
-        if (args.length == 1) {
-            String seedPath = args[0];
-            MinesweeperGame game = new MinesweeperGame(stdIn, seedPath);
-            game.play();
-        } else {
+        if (next != args.length - 1) {
             System.out.println();
-            System.err.println("Usage: MinesweeperDriver SEED_FILE_PATH");
+            System.err.println("Usage: MinesweeperDriver [--ansi] [--metrics FILE]"
+                + " [--journal FILE] [--scores FILE] SEED_FILE_PATH");
+            System.err.println("       MinesweeperDriver --parallel SCRIPT_DIR [THREADS]");
+            System.err.println("       MinesweeperDriver --server PORT SEED_FILE_PATH"
+                + " [SCORES_FILE]");
+            System.err.println("       MinesweeperDriver --leaderboard FILE top K|percentile P"
+                + "|histogram BINS [seed ID|size ROWSxCOLS]");
+            System.err.println("       MinesweeperDriver --fuzz GAMES [THREADS] [MASTER_SEED]");
             System.exit(1);
         }
+        //the game prints through a writer thread; stale boards are only skipped on a
+        //terminal, and never in ANSI mode, where each frame builds on the one before
+        AsyncOutput output = new AsyncOutput(new FileOutputStream(FileDescriptor.out),
+            new FileOutputStream(FileDescriptor.err), AsyncOutput.DEFAULT_CAPACITY,
+            System.console() != null && !useAnsi);
+        output.closeOnExit();
+        MinesweeperGame game = new MinesweeperGame(stdIn, args[next], output);
+        game.useHistory(MinesweeperEngine.DEFAULT_HISTORY_LIMIT);
+        if (useAnsi) {
+            game.useAnsi();
+        }
+        if (journalPath != null) {
+            try {
+                game.useJournal(new File(journalPath));
+            } catch (IOException e) {
+                output.close();
+                System.err.println("Journal Error: " + e.getMessage());
+                System.exit(2);
+            }
+        }
+        ScoreStore scores = null;
+        if (scoresPath != null) {
+            try {
+                scores = new ScoreStore(new File(scoresPath));
+            } catch (IOException e) {
+                output.close();
+                System.err.println("Score Store Error: " + e.getMessage());
+                System.exit(2);
+            }
+            game.useScores(scores);
+        }
+        if (metricsPath == null) {
+            game.play();
+            output.close();
+            closeScores(scores);
+            return;
+        }
+        File metricsFile = new File(metricsPath);
+        GameMetrics metrics = new GameMetrics();
+        try {
+            metrics.register();
+        } catch (JMException e) {
+            System.err.println("Metrics Registration Error: " + e.getMessage());
+        }
+        game.useMetrics(metrics);
+        metrics.startDump(metricsFile, METRICS_PERIOD_SECONDS);
+        game.play();
+        output.close();
+        closeScores(scores);
+        metrics.stopDump();
+        if (!metrics.dump(metricsFile)) {
+            System.err.println("Metrics File Write Error: " + metricsPath);
+        }
+    }
+
+    /**
+     * Writes out and closes the score store of a game, if it has one.
+     * @param scores the score store, or null
+     */
+    private static void closeScores(ScoreStore scores) {
+        if (scores == null) {
+            return;
+        }
+        try {
+            scores.close();
+        } catch (IOException e) {
+            System.err.println("Score Store Write Error: " + e.getMessage());
+        }
     }
 }
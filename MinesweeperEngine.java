@@ -0,0 +1,483 @@
+package cs1302.game;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+
+/**
+ * The {@link cs1302.game.MinesweeperEngine} class applies the rules of Minesweeper to a
+ * {@link MinesweeperBoard} without printing anything and without ever exiting the
+ * process. It counts rounds exactly like {@link MinesweeperGame}, which uses it for
+ * every move, and can also replay a whole stream of commands and report the outcome as
+ * a {@link GameResult}.
+ *
+ * <p>With history turned on, every move first takes a {@link MinesweeperBoard#snapshot}
+ * of the board, so moves can be undone and redone, and {@link #fork} branches off a
+ * second engine from any point of the game to try another line of play. Only the
+ * newest moves, up to a limit, can be undone, so a long game does not keep every
+ * snapshot it ever took.
+ */
+public class MinesweeperEngine {
+
+    /** The game is still being played. */
+    public static final int PLAYING = 0;
+    /** Every mine has been flagged and every other square revealed. */
+    public static final int WON = 1;
+    /** A mine was revealed. */
+    public static final int LOST = 2;
+    /** The player quit. */
+    public static final int QUIT = 3;
+
+    /** The most moves that can be undone unless another limit is set. */
+    public static final int DEFAULT_HISTORY_LIMIT = 256;
+
+    private final CommandParser parser = new CommandParser();
+    private MinesweeperBoard board;
+    private int status = PLAYING;
+    private int roundsCompleted = 0;
+    private int lastRevealCount = 0;
+    private int invalidCommands = 0;
+    private GameMetrics metrics;
+    private boolean keepHistory = false;
+    private int historyLimit = DEFAULT_HISTORY_LIMIT;
+    private final ArrayDeque<Checkpoint> undoMoves = new ArrayDeque<>();
+    private final ArrayDeque<Checkpoint> redoMoves = new ArrayDeque<>();
+
+    /**
+     * The state of the game before a move, kept so the move can be undone.
+     */
+    private static class Checkpoint {
+
+        private final MinesweeperBoard board;
+        private final int status;
+        private final int lastRevealCount;
+
+        /**
+         * Records the state of a game.
+         * @param board a snapshot of the board
+         * @param status the status of the game
+         * @param lastRevealCount the number of squares opened by the last reveal
+         */
+        Checkpoint(MinesweeperBoard board, int status, int lastRevealCount) {
+            this.board = board;
+            this.status = status;
+            this.lastRevealCount = lastRevealCount;
+        }
+    }
+
+    /**
+     * Creates an engine playing on a board.
+     * @param board the board to play on
+     */
+    public MinesweeperEngine(MinesweeperBoard board) {
+        reset(board);
+    }
+
+    /**
+     * Starts a new game on a board, so one engine can play many games in turn.
+     * @param board the board to play on
+     */
+    public void reset(MinesweeperBoard board) {
+        this.board = board;
+        this.status = PLAYING;
+        this.roundsCompleted = 0;
+        this.lastRevealCount = 0;
+        this.invalidCommands = 0;
+        undoMoves.clear();
+        redoMoves.clear();
+    }
+
+    /**
+     * Chooses whether or not moves are remembered so they can be undone. History is off
+     * by default, so replays and the solver pay nothing for it.
+     * @param keepHistory true to remember moves from now on; false to forget them all
+     */
+    public void useHistory(boolean keepHistory) {
+        this.keepHistory = keepHistory;
+        if (!keepHistory) {
+            undoMoves.clear();
+            redoMoves.clear();
+        }
+    }
+
+    /**
+     * Sets the most moves that can be undone; once more are made, the oldest are
+     * forgotten. Moves already remembered past the limit are forgotten at once.
+     * @param historyLimit the most moves kept, at least one
+     * @throws IllegalArgumentException if the limit is less than one
+     */
+    public void setHistoryLimit(int historyLimit) {
+        if (historyLimit < 1) {
+            throw new IllegalArgumentException("History limit " + historyLimit
+                + " is less than one");
+        }
+        this.historyLimit = historyLimit;
+        trim(undoMoves);
+        trim(redoMoves);
+    }
+
+    /**
+     * Forgets every move that could be undone or redone, keeping history on if it was.
+     */
+    public void clearHistory() {
+        undoMoves.clear();
+        redoMoves.clear();
+    }
+
+    /**
+     * Returns a new engine continuing this game on a snapshot of its board, so another
+     * line of play can be tried without disturbing this one. The fork keeps history if
+     * this engine does, but starts with none. It does not record metrics.
+     * @return the new engine
+     */
+    public MinesweeperEngine fork() {
+        MinesweeperEngine fork = new MinesweeperEngine(board.snapshot());
+        fork.status = status;
+        fork.roundsCompleted = roundsCompleted;
+        fork.lastRevealCount = lastRevealCount;
+        fork.invalidCommands = invalidCommands;
+        fork.keepHistory = keepHistory;
+        fork.historyLimit = historyLimit;
+        return fork;
+    }
+
+    /**
+     * Takes back the last move that has not been undone. Uses up a round, like any
+     * other command, but only if there was a move to undo.
+     * @return true if a move was undone; false if there was none
+     */
+    public boolean undo() {
+        return travel(undoMoves, redoMoves);
+    }
+
+    /**
+     * Plays again the last move that was undone, unless another move was made since.
+     * Uses up a round, but only if there was a move to redo.
+     * @return true if a move was redone; false if there was none
+     */
+    public boolean redo() {
+        return travel(redoMoves, undoMoves);
+    }
+
+    /**
+     * Returns the game to the newest checkpoint in {@code from}, keeping the current
+     * state in {@code to}.
+     * @param from the checkpoints to return to
+     * @param to the checkpoints to keep the current state in
+     * @return true if there was a checkpoint to return to; false otherwise
+     */
+    private boolean travel(ArrayDeque<Checkpoint> from, ArrayDeque<Checkpoint> to) {
+        Checkpoint checkpoint = from.pollFirst();
+        if (checkpoint == null) {
+            return false;
+        }
+        to.addFirst(new Checkpoint(board.snapshot(), status, lastRevealCount));
+        trim(to);
+        board.restore(checkpoint.board);
+        status = checkpoint.status;
+        lastRevealCount = checkpoint.lastRevealCount;
+        roundsCompleted++;
+        return true;
+    }
+
+    /**
+     * Remembers the state of the game before a move, if history is kept.
+     */
+    private void checkpoint() {
+        if (keepHistory) {
+            undoMoves.addFirst(new Checkpoint(board.snapshot(), status, lastRevealCount));
+            trim(undoMoves);
+            redoMoves.clear();
+        }
+    }
+
+    /**
+     * Forgets the oldest checkpoints past the history limit.
+     * @param checkpoints the checkpoints to trim, newest first
+     */
+    private void trim(ArrayDeque<Checkpoint> checkpoints) {
+        while (checkpoints.size() > historyLimit) {
+            checkpoints.removeLast();
+        }
+    }
+
+    /**
+     * Counts every command applied from now on, and times every win check, in
+     * {@code metrics}.
+     * @param metrics the metrics to record to, or null to stop recording
+     */
+    public void useMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the board being played on.
+     * @return the board
+     */
+    public MinesweeperBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns whether the game is still being played, won, lost or quit.
+     * @return one of {@link #PLAYING}, {@link #WON}, {@link #LOST} or {@link #QUIT}
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the number of rounds completed so far.
+     * @return the number of rounds completed
+     */
+    public int getRoundsCompleted() {
+        return roundsCompleted;
+    }
+
+    /**
+     * Sets the number of rounds completed, for a game resumed from where it was saved.
+     * @param roundsCompleted the number of rounds completed
+     */
+    public void setRoundsCompleted(int roundsCompleted) {
+        this.roundsCompleted = roundsCompleted;
+    }
+
+    /**
+     * Returns how many squares the most recent reveal uncovered.
+     * @return the number of squares opened by the last reveal
+     */
+    public int getLastRevealCount() {
+        return lastRevealCount;
+    }
+
+    /**
+     * Returns the number of commands that were not recognized or named a square
+     * outside of the board.
+     * @return the number of invalid commands
+     */
+    public int getInvalidCommands() {
+        return invalidCommands;
+    }
+
+    /**
+     * Parses and applies one command line. Invalid commands do not use up a round.
+     * @param line the command line
+     * @return the command applied, one of the {@link CommandParser} constants
+     */
+    public int apply(CharSequence line) {
+        return apply(parser.parse(line), parser.getRow(), parser.getCol());
+    }
+
+    /**
+     * Applies one command that has already been parsed, such as a command read back from
+     * a {@link GameJournal}.
+     * @param command one of the {@link CommandParser} constants
+     * @param row the row of a move, ignored for other commands
+     * @param col the column of a move, ignored for other commands
+     * @return the command applied
+     */
+    public int apply(int command, int row, int col) {
+        switch (command) {
+        case CommandParser.HELP:
+        case CommandParser.NOFOG:
+        case CommandParser.HINT:
+        case CommandParser.ODDS:
+            useRound();
+            break;
+        case CommandParser.GUESS:
+            guess(row, col);
+            break;
+        case CommandParser.QUIT:
+            quit();
+            break;
+        case CommandParser.MARK:
+            mark(row, col);
+            break;
+        case CommandParser.REVEAL:
+            reveal(row, col);
+            break;
+        case CommandParser.UNDO:
+            undo();
+            break;
+        case CommandParser.REDO:
+            redo();
+            break;
+        default:
+            countInvalid();
+            break;
+        }
+        return command;
+    }
+
+    /**
+     * Uses up a round for a command that does not change the board, such as help or hint.
+     */
+    public void useRound() {
+        roundsCompleted++;
+    }
+
+    /**
+     * Indicates whether or not the square is in the game grid.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return true if the square is in the game grid; false otherwise
+     */
+    public boolean isInBounds(int row, int col) {
+        return row >= 0 && row < board.getRows() && col >= 0 && col < board.getCols();
+    }
+
+    /**
+     * Reveals a square, along with the empty region around it. Revealing a mine loses
+     * the game.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return true if the square is in bounds; false otherwise
+     */
+    public boolean reveal(int row, int col) {
+        if (!isInBounds(row, col)) {
+            countInvalid();
+            return false;
+        }
+        checkpoint();
+        roundsCompleted++;
+        if (metrics != null) {
+            metrics.countReveal();
+        }
+        if (board.isMine(row, col)) {
+            lastRevealCount = 0;
+            status = LOST;
+        } else {
+            lastRevealCount = board.revealArea(row, col);
+            checkWon();
+        }
+        return true;
+    }
+
+    /**
+     * Marks a square with a flag.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return true if the square is in bounds; false otherwise
+     */
+    public boolean mark(int row, int col) {
+        if (!isInBounds(row, col)) {
+            countInvalid();
+            return false;
+        }
+        checkpoint();
+        roundsCompleted++;
+        if (metrics != null) {
+            metrics.countMark();
+        }
+        board.mark(row, col);
+        checkWon();
+        return true;
+    }
+
+    /**
+     * Marks a square with a guess.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return true if the square is in bounds; false otherwise
+     */
+    public boolean guess(int row, int col) {
+        if (!isInBounds(row, col)) {
+            countInvalid();
+            return false;
+        }
+        checkpoint();
+        roundsCompleted++;
+        if (metrics != null) {
+            metrics.countGuess();
+        }
+        board.guess(row, col);
+        checkWon();
+        return true;
+    }
+
+    /**
+     * Ends the game because the player quit.
+     */
+    public void quit() {
+        status = QUIT;
+    }
+
+    /**
+     * Ends the game as won once the board is solved.
+     */
+    private void checkWon() {
+        if (metrics == null) {
+            if (board.isSolved()) {
+                status = WON;
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        boolean solved = board.isSolved();
+        metrics.record(GameMetrics.WIN_CHECK, System.nanoTime() - start);
+        if (solved) {
+            status = WON;
+        }
+    }
+
+    /**
+     * Counts a command that was not recognized or named a square outside of the board.
+     */
+    private void countInvalid() {
+        invalidCommands++;
+        if (metrics != null) {
+            metrics.countInvalid();
+        }
+    }
+
+    /**
+     * Calculates the score based on grid size and rounds played: 100 times the number of
+     * squares, divided by the rounds completed. A reveal can open a whole empty region in
+     * one round, so a game can be won in fewer rounds than there are squares, and then
+     * scores above 100.
+     * @return score calculation if rounds not equal to zero, otherwise no score is returned
+     */
+    public double score() {
+        if (roundsCompleted != 0) {
+            return (((double) board.getRows() * board.getCols() * 100.0) / roundsCompleted);
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Applies commands read from {@code commands}, one per line, until the game ends or
+     * the commands run out.
+     * @param commands the reader supplying the command lines
+     * @param captureBoard true to include the final "nofog" view of the board in the result
+     * @return the outcome of the game
+     * @throws IOException if the commands cannot be read
+     */
+    public GameResult run(BufferedReader commands, boolean captureBoard) throws IOException {
+        String line;
+        while (status == PLAYING && (line = commands.readLine()) != null) {
+            apply(line);
+        }
+        return result(captureBoard);
+    }
+
+    /**
+     * Returns the outcome of the game so far.
+     * @param captureBoard true to include the final "nofog" view of the board in the result
+     * @return the outcome of the game
+     */
+    public GameResult result(boolean captureBoard) {
+        String finalBoard = null;
+        if (captureBoard) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(bytes);
+            new BoardRenderer(board).print(out, true);
+            out.flush();
+            finalBoard = bytes.toString();
+        }
+        return new GameResult(status, roundsCompleted, status == WON ? score() : 0,
+            invalidCommands, finalBoard);
+    }
+}
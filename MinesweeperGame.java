@@ -2,25 +2,47 @@ package cs1302.game;
 
 import java.util.Scanner;
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.InputMismatchException;
-import java.io.FileNotFoundException;
 
 /**
  * The {@link cs1302.game.MinesweeperGame} class that contains
  * the methods and variables needed to run the game, Minesweeper.
+ * The rules themselves are applied by a {@link MinesweeperEngine}; this class reads
+ * the player's commands and prints the game.
  */
 public class MinesweeperGame {
 
+    /** The text printed in front of the number of rounds completed. */
+    static final String ROUNDS_LABEL = "Rounds Completed: ";
+    /** The prompt printed before each command is read. */
+    static final String PROMPT = "minesweeper-alpha: ";
+
     private int rows;
     private int cols;
-    private String[][] minesweeperGameArray;
-    private boolean [][] isMineArray;
-    private String [][] noFogArray;
+    private MinesweeperBoard board;
+    private MinesweeperEngine engine;
+    private BoardRenderer renderer;
+    private AnsiRenderer ansi;
+    private MinesweeperSolver solver;
+    private MineProbabilities odds;
+    //the time budgets of a hint and of the odds view
+    private long hintNanos = Long.MAX_VALUE;
+    private long oddsNanos = MineProbabilities.DEFAULT_MAX_NANOS;
+    private boolean showOdds = false;
+    private GameMetrics metrics;
+    private GameJournal journal;
+    private ScoreStore scores;
+    private long startNanos;
 
     private int totalMines = 0;
-    private int roundsCompleted = 0;
     public boolean noFog = false;
     private final Scanner stdIn;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final AsyncOutput output;
+    private final CommandParser parser = new CommandParser();
 
     /**
      * Initializes the {@code stdIn} instance constant.
@@ -30,146 +52,202 @@ public class MinesweeperGame {
      * @param seedPath of type String which specifies name of file to be used
      */
     public MinesweeperGame(Scanner stdIn, String seedPath) {
+        this(stdIn, seedPath, System.out, System.err, null);
+    }
+
+    /**
+     * Creates a game like {@link #MinesweeperGame(Scanner, String)}, but printing through
+     * {@code output}, so the game never waits on the terminal. Each round's board is
+     * printed as one frame.
+     * @param stdIn of type Scanner which reads in standard input
+     * @param seedPath of type String which specifies name of file to be used
+     * @param output the output the game is printed to
+     */
+    public MinesweeperGame(Scanner stdIn, String seedPath, AsyncOutput output) {
+        this(stdIn, seedPath, output.getOut(), output.getErr(), output);
+    }
+
+    /**
+     * Creates a game reading standard input and loading its board from a seed file.
+     * @param stdIn of type Scanner which reads in standard input
+     * @param seedPath of type String which specifies name of file to be used
+     * @param out the stream the game is printed to
+     * @param err the stream error messages are printed to
+     * @param output the output {@code out} and {@code err} belong to, or null
+     */
+    private MinesweeperGame(Scanner stdIn, String seedPath, PrintStream out, PrintStream err,
+        AsyncOutput output) {
         this.stdIn = stdIn;
+        this.out = out;
+        this.err = err;
+        this.output = output;
         try {
-            File seedFile = new File(seedPath);
-            Scanner configScanner = new Scanner(seedFile);
-            if (configScanner.hasNextInt()) {
-                this.rows = configScanner.nextInt();
-                validateRows(rows);
-                if (configScanner.hasNextInt()) {
-                    this.cols = configScanner.nextInt();
-                    validateCols(cols);
-                }
-            } else {
-                System.err.println();
-                System.err.println("Seed File Malformed Error: Cannot"
-                    + " create a mine field with that many rows and/or columns!");
-                System.exit(3);
-            }
-            if (configScanner.hasNextInt()) {
-                this.totalMines = configScanner.nextInt();
-                if ((this.totalMines > rows * cols)) {
-                    System.err.println();
-                    System.err.println("Seed File Malformed Error: Cannot"
-                             + " create a mine field with that many rows and/or columns!");
-                    System.exit(3);
-                }
-            }
-            isMineArray = new boolean[rows][cols];
-            minesweeperGameArray = new String[rows][cols];
-            noFogArray = new String[rows][cols];
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < cols; j++) {
-                    isMineArray[i][j] = false;
-                    minesweeperGameArray[i][j] = "   ";
-                    noFogArray[i][j] = "   ";
-                }
-            }
-            for (int i = 0; i < totalMines; i++) {
-                int mineRow;
-                int mineCol;
-                if (configScanner.hasNextInt()) {
-                    mineRow = configScanner.nextInt();
-                    mineCol = configScanner.nextInt();
-                    if ((mineRow > rows - 1) || (mineCol > cols - 1)) {
-                        System.err.println();
-                        System.err.println("Seed File Malformed Error: Cannot"
-                            + " create a mine field with that many rows and/or columns!");
-                        System.exit(3);
-                    } else {
-                        isMineArray[mineRow][mineCol] = true;
-                    }
-                }
-            }
-        } catch (FileNotFoundException e) {
-            System.err.println();
-            System.err.println("Seed File Not Found Error: " + e.getMessage());
-            e.printStackTrace();
+            setBoard(SeedCache.getDefault().load(seedPath), null);
+        } catch (InputMismatchException e) {
+            err.println();
+            err.println("Seed File Malformed Error: Cannot"
+                + " create a mine field with that many rows and/or columns!");
+            System.exit(3);
+        } catch (IOException e) {
+            err.println();
+            err.println("Seed File Not Found Error: " + e.getMessage());
+            e.printStackTrace(err);
             System.exit(2);
         }
     }
 
     /**
-     * Validates the number of rows in file.
-     * @param rows of type int
+     * Creates a game on a board that has already been loaded, printing to the given
+     * streams instead of standard output and standard error. Such a game is played one
+     * line at a time through {@link #start} and {@link #play(String)}, so it needs no
+     * {@link Scanner}.
+     * @param board the board to play on, with adjacency computed
+     * @param out the stream the game is printed to
+     * @param err the stream error messages are printed to
      */
-    public void validateRows(int rows) {
-        //rows must be nonnegative and greater than 5 but less than 10
-        if ((rows <= 0 || rows < 5 || rows > 10)) {
-            System.err.println();
-            System.err.println("Seed File Malformed Error: Cannot"
-                             + " create a mine field with that many rows and/or columns!");
-            System.exit(3);
+    public MinesweeperGame(MinesweeperBoard board, PrintStream out, PrintStream err) {
+        this(board, out, err, null);
+    }
+
+    /**
+     * Creates a game like {@link #MinesweeperGame(MinesweeperBoard, PrintStream,
+     * PrintStream)} whose board is drawn into the buffer of another renderer, which must
+     * never draw while this game prints.
+     * @param board the board to play on, with adjacency computed
+     * @param out the stream the game is printed to
+     * @param err the stream error messages are printed to
+     * @param shared the renderer of a board of the same size, or null for a buffer of the
+     *     game's own
+     */
+    public MinesweeperGame(MinesweeperBoard board, PrintStream out, PrintStream err,
+        BoardRenderer shared) {
+        this.stdIn = null;
+        this.out = out;
+        this.err = err;
+        this.output = null;
+        setBoard(board, shared);
+    }
+
+    /**
+     * Sets up the engine and renderer for the board to be played on.
+     * @param board the board to play on
+     * @param shared the renderer whose buffer is drawn into, or null for a new buffer
+     */
+    private void setBoard(MinesweeperBoard board, BoardRenderer shared) {
+        this.board = board;
+        rows = board.getRows();
+        cols = board.getCols();
+        totalMines = board.getMineCount();
+        engine = new MinesweeperEngine(board);
+        renderer = shared == null ? new BoardRenderer(board) : new BoardRenderer(board, shared);
+    }
+
+    /**
+     * Switches the game to ANSI mode. After the first full frame, each round only
+     * repaints the squares that changed, the rounds counter and the prompt, using
+     * ANSI escape sequences to position the cursor. Messages of more than one line and
+     * boards too tall for the screen are followed by full frames instead.
+     */
+    public void useAnsi() {
+        ansi = new AnsiRenderer(board);
+    }
+
+    /**
+     * Records how long each phase of every round takes, what each move allocates and
+     * which commands are played in {@code metrics}. Without metrics nothing is timed.
+     * @param metrics the metrics to record to, or null to stop recording
+     */
+    public void useMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+        engine.useMetrics(metrics);
+    }
+
+    /**
+     * Lets the player undo and redo up to {@code limit} moves. History is off until this
+     * is called, so a game nobody undoes takes no snapshots; without it, undo and redo
+     * find nothing to take back.
+     * @param limit the most moves that can be undone, or 0 to turn history off
+     */
+    public void useHistory(int limit) {
+        if (limit > 0) {
+            engine.setHistoryLimit(limit);
         }
+        engine.useHistory(limit > 0);
     }
 
     /**
-     * Validates the number of columns in file.
-     * @param cols of type int
+     * Limits the time a hint or the odds view may take, for a game that shares its thread
+     * with others. A hint found once the time is up is a guess, and odds over budget are
+     * approximate. Without this, a hint takes as long as it needs and the odds view gets
+     * {@link MineProbabilities#DEFAULT_MAX_NANOS}.
+     * @param maxNanos the time budget of one hint or odds view, in nanoseconds
      */
-    public void validateCols(int cols) {
-        //columns must be nonnegative and greater than 5 but less than 10
-        if ((cols <= 0 || cols < 5 || cols > 10)) {
-            System.err.println();
-            System.err.println("Seed File Malformed Error: Cannot"
-                              + " create a mine field with that many rows and/or columns!");
-            System.exit(3);
+    public void useAnalysisBudget(long maxNanos) {
+        hintNanos = maxNanos;
+        oddsNanos = maxNanos;
+        odds = null;
+        if (solver != null) {
+            solver.setTimeBudget(maxNanos);
         }
     }
 
+    /**
+     * Saves the game to a journal file as it is played. If the file already holds a
+     * saved game of this seed, that game is resumed first.
+     * @param file the journal file
+     * @return the number of commands replayed after the journal's checkpoint
+     * @throws IOException if the journal cannot be read or written, or belongs to
+     *     another seed
+     */
+    public int useJournal(File file) throws IOException {
+        journal = new GameJournal(file, engine);
+        return journal.getCommandsSinceCheckpoint();
+    }
+
+    /**
+     * Records the result of the game in a score store once it is won or lost.
+     * @param scores the store to record to, or null to record nothing
+     */
+    public void useScores(ScoreStore scores) {
+        this.scores = scores;
+    }
+
     /**
      * Prints the welcome banner to standard output.
      */
     public void printWelcome() {
 
-        System.out.println("        _");
-        System.out.println("  /\\/\\(F)_ __   ___  _____      _____  ___ _ __   ___ _ __");
-        System.out.println(" /    \\| | '_ \\ / _ \\/ __\\ \\ /\\ / / _ \\/ _ \\ '_ \\"
+        out.println("        _");
+        out.println("  /\\/\\(F)_ __   ___  _____      _____  ___ _ __   ___ _ __");
+        out.println(" /    \\| | '_ \\ / _ \\/ __\\ \\ /\\ / / _ \\/ _ \\ '_ \\"
             + "/ _ \\ '__|");
-        System.out.println("/ /\\/\\ \\ | | | |  __/\\__ \\\\ V  V /  __/  __/ |_) |  __/ |");
-        System.out.println("\\/    \\/_|_| |_|\\___||___/ \\_/\\_/ \\___|\\___| .__/ \\___|_|");
-        System.out.println("                             ALPHA EDITION |_| v2021.sp");
+        out.println("/ /\\/\\ \\ | | | |  __/\\__ \\\\ V  V /  __/  __/ |_) |  __/ |");
+        out.println("\\/    \\/_|_| |_|\\___||___/ \\_/\\_/ \\___|\\___| .__/ \\___|_|");
+        out.println("                             ALPHA EDITION |_| v2021.sp");
     }
 
     /**
      * Prints the current contents of the mine field to standard output.
      */
     public void printMineField() {
-        //prints mine field array
-        for (int i = 0; i < minesweeperGameArray.length; i++) {
-            //prints out index numbers on grid
-            System.out.print(i + " |");
-            for (int j = 0; j < minesweeperGameArray[i].length; j++) {
-                System.out.print(minesweeperGameArray[i][j]);
-                if (j < minesweeperGameArray[i].length - 1) {
-                    System.out.print("|");
-                }
-            }
-            System.out.println("|");
-        }
-        System.out.print("    ");
-        for (int i = 0; i < minesweeperGameArray[0].length; i++) {
-            System.out.print(i + "   ");
-        }
-        System.out.println();
+        renderer.print(out, false);
     }
 
     /**
      * Outputs rounds completed line.
      */
     public void printRoundsCompleted() {
-        System.out.println();
-        System.out.println("Rounds Completed: " + roundsCompleted);
-        System.out.println();
+        out.println();
+        out.println(ROUNDS_LABEL + engine.getRoundsCompleted());
+        out.println();
     }
 
     /**
      * Prints line prompt for user command input.
      */
     public void printMineAlpha() {
-        System.out.println();
-        System.out.print("minesweeper-alpha: ");
+        out.println();
+        out.print(PROMPT);
     }
 
     /**
@@ -181,277 +259,325 @@ public class MinesweeperGame {
      * If the {@code noFog} command is used, the {@link noFog} method is called.
      */
     public void promptUser() {
-        String fullCommand = this.stdIn.nextLine().trim();
-        Scanner commandScan = new Scanner(fullCommand);
-        String command = "";
+        String fullCommand = this.stdIn.nextLine();
+        if (ansi != null) {
+            ansi.clearBelow(out);
+        }
+        apply(fullCommand);
+    }
 
-        try {
-            command = commandScan.next().trim();
-        } catch (Exception e) {
-            e.getMessage();
+    /**
+     * Parses one command line and carries it out.
+     * @param fullCommand the command line typed by the player
+     */
+    private void apply(String fullCommand) {
+        long start = metrics == null ? 0 : System.nanoTime();
+        int command = parser.parse(fullCommand);
+        if (metrics != null) {
+            long parsed = System.nanoTime();
+            metrics.record(GameMetrics.PARSE, parsed - start);
+            start = parsed;
         }
         switch (command) {
-        case "h":
-        case "help":
+        case CommandParser.HELP:
             help();
             break;
-        case "g":
-        case "guess":
-            guess(commandScan);
+        case CommandParser.GUESS:
+            guess(parser.getRow(), parser.getCol());
             break;
-        case "q":
-        case "quit":
+        case CommandParser.QUIT:
             quit();
             break;
-        case "m":
-        case "mark":
-            mark(commandScan);
+        case CommandParser.MARK:
+            mark(parser.getRow(), parser.getCol());
             break;
-        case "r":
-        case "reveal":
-            reveal(commandScan);
+        case CommandParser.REVEAL:
+            reveal(parser.getRow(), parser.getCol());
             break;
-        case "nofog":
+        case CommandParser.NOFOG:
             noFog();
             break;
+        case CommandParser.HINT:
+            hint();
+            break;
+        case CommandParser.ODDS:
+            odds();
+            break;
+        case CommandParser.UNDO:
+            undo();
+            break;
+        case CommandParser.REDO:
+            redo();
+            break;
         default:
+            if (metrics != null) {
+                metrics.countInvalid();
+            }
             printInvalid();
             break;
         }
+        if (journal != null) {
+            journal(command);
+        }
+        if (metrics != null) {
+            metrics.record(GameMetrics.APPLY, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Appends a command that was just applied to the journal. Invalid commands, moves off
+     * the board and quitting change nothing worth saving, so they are left out. A journal
+     * that cannot be written is dropped with an error message and the game goes on.
+     * @param command the command that was applied
+     */
+    private void journal(int command) {
+        if (command == CommandParser.INVALID || command == CommandParser.QUIT) {
+            return;
+        }
+        if ((command == CommandParser.REVEAL || command == CommandParser.MARK
+            || command == CommandParser.GUESS)
+            && !engine.isInBounds(parser.getRow(), parser.getCol())) {
+            return;
+        }
+        try {
+            journal.append(command, parser.getRow(), parser.getCol());
+        } catch (IOException e) {
+            err.println("Journal Write Error: " + e.getMessage());
+            journal = null;
+        }
     }
 
     /**
      * Prints and displays the help menu.
      */
     public void help() {
-        this.roundsCompleted++; //displaying the command list uses up a round
-        System.out.println();
-        System.out.println("Commands Available...");
-        System.out.println(" - Reveal: r/reveal row col");
-        System.out.println(" -   Mark: m/mark   row col");
-        System.out.println(" -  Guess: g/guess  row col");
-        System.out.println(" -   Help: h/help");
-        System.out.println(" -   Quit: q/quit");
+        engine.useRound(); //displaying the command list uses up a round
+        out.println();
+        out.println("Commands Available...");
+        out.println(" - Reveal: r/reveal row col");
+        out.println(" -   Mark: m/mark   row col");
+        out.println(" -  Guess: g/guess  row col");
+        out.println(" -   Hint: hint");
+        out.println(" -   Odds: odds");
+        out.println(" -   Undo: undo");
+        out.println(" -   Redo: redo");
+        out.println(" -   Help: h/help");
+        out.println(" -   Quit: q/quit");
+        messageShown();
+    }
+
+    /**
+     * Prints a suggested next move found by the {@link MinesweeperSolver}.
+     * Like the help menu, asking for a hint uses up a round.
+     */
+    public void hint() {
+        engine.useRound();
+        //the solver follows the board from now on, so later hints do not rescan it
+        if (solver == null) {
+            solver = new MinesweeperSolver(engine);
+            solver.setTimeBudget(hintNanos);
+        }
+        int move = solver.findMove();
+        out.println();
+        if (move == CommandParser.MARK) {
+            out.println("Hint: m " + solver.getMoveRow() + " " + solver.getMoveCol()
+                + " (certain mine)");
+        } else if (move == CommandParser.REVEAL) {
+            out.println("Hint: r " + solver.getMoveRow() + " " + solver.getMoveCol()
+                + (solver.isMoveGuess() ? " (best guess)" : " (certain safe)"));
+        } else {
+            out.println("Hint: no move left to suggest");
+        }
+        messageShown();
+    }
+
+    /**
+     * Takes back the last move. Like any other move, undoing uses up a round.
+     */
+    public void undo() {
+        out.println();
+        if (!engine.undo()) {
+            out.println("Nothing to undo.");
+            messageShown();
+            return;
+        }
+        forgetSolver();
+    }
+
+    /**
+     * Plays again the last move that was taken back. Redoing also uses up a round.
+     */
+    public void redo() {
+        out.println();
+        if (!engine.redo()) {
+            out.println("Nothing to redo.");
+            messageShown();
+            return;
+        }
+        forgetSolver();
+    }
+
+    /**
+     * Drops the solver used for hints, whose deductions only hold while squares are never
+     * hidden again; the next hint starts a new one.
+     */
+    private void forgetSolver() {
+        if (solver != null) {
+            board.removeListener(solver);
+            solver = null;
+        }
     }
 
     /**
      * Method for revealing a square on the grid.
-     * @param stdIn interprets square row and column indices
-     * @return true if reveal is in bounds and follows correct syntax, otherwise false
-     */
-    public boolean reveal(Scanner stdIn) {
-        boolean userReveal = false;
-        int rowReveal = 0;
-        int columnReveal = 0;
-        while (stdIn.hasNext()) {
-            if (stdIn.hasNextInt()) {
-                rowReveal = stdIn.nextInt();
-                if (stdIn.hasNextInt()) {
-                    columnReveal = stdIn.nextInt();
-                    //checks if there is a subsequent token, prints invalid if true
-                    if (stdIn.hasNextInt() || stdIn.hasNextInt()) {
-                        printInvalid();
-                        return true;
-                    }
-                }
-                if (isInBounds(rowReveal, columnReveal)) {
-                    userReveal = true;
-                    roundsCompleted++;
-                    if (!isMineArray[rowReveal][columnReveal]) {
-                        minesweeperGameArray[rowReveal][ columnReveal] = " "
-                            + getNumAdjMines(rowReveal, columnReveal) + " ";
-                        System.out.println();
-                    } else {
-                        printLoss();
-                    }
-                } else {
-                    printInvalid();
-                }
-            }
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return true if reveal is in bounds, otherwise false
+     */
+    public boolean reveal(int row, int col) {
+        if (!engine.reveal(row, col)) {
+            printOutOfBounds(row, col);
+            printInvalid();
+            return false;
+        }
+        if (engine.getStatus() == MinesweeperEngine.LOST) {
+            printLoss();
+        } else {
+            out.println();
         }
-        return userReveal;
+        return true;
     } //reveal method
 
+    /**
+     * Returns how many squares the most recent reveal uncovered.
+     * Revealing an empty square also uncovers the empty region around it.
+     * @return the number of squares opened by the last reveal
+     */
+    public int getLastRevealCount() {
+        return engine.getLastRevealCount();
+    }
+
     /**
      * Method for marking a square definitely containing a mine.
-     * @param stdIn interprets row and column indices
-     * @return true if mark is in bounds and follows correct syntax, otherwise false
-     */
-    public boolean mark(Scanner stdIn) {
-        boolean userMark = false;
-        int rowMark = 0;
-        int columnMark = 0;
-        while (stdIn.hasNext()) {
-            if (stdIn.hasNextInt()) {
-                rowMark = stdIn.nextInt();
-                if (stdIn.hasNextInt()) {
-                    columnMark = stdIn.nextInt();
-                    //checks if there is a subsequent token, prints invalid if true
-                    if (stdIn.hasNextInt() || stdIn.hasNext()) {
-                        printInvalid();
-                        return true;
-                    }
-                    if (isInBounds(rowMark, columnMark)) {
-                        userMark = true;
-                        roundsCompleted++;
-                        //"F" denotes the flag placed on the square
-                        minesweeperGameArray[rowMark][columnMark] = " F ";
-                    }
-                } else {
-                    printInvalid();
-                    return true;
-                }
-            }
-            return true;
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return true if mark is in bounds, otherwise false
+     */
+    public boolean mark(int row, int col) {
+        if (!engine.mark(row, col)) {
+            printOutOfBounds(row, col);
+            return false;
         }
-        return userMark;
+        return true;
     } //mark method
 
     /**
      * Method for marking a square as potentially containg a mine.
-     * @param stdIn interprets row and column indices
-     * @return true if guess is in bounds and follows correct syntax, otherwise false
-     */
-    public boolean guess(Scanner stdIn) {
-        boolean userGuess = false;
-        int rowGuess = 0;
-        int columnGuess = 0;
-        while (stdIn.hasNext()) {
-            if (stdIn.hasNextInt()) {
-                rowGuess = stdIn.nextInt();
-                if (stdIn.hasNextInt()) {
-                    columnGuess = stdIn.nextInt();
-                    //checks if there is a subsequent token, prints invalid if true
-                    if (stdIn.hasNextInt() || stdIn.hasNext()) {
-                        printInvalid();
-                        return true;
-                    }
-                    if (isInBounds(rowGuess, columnGuess)) {
-                        userGuess = true;
-                        roundsCompleted++;
-                        // a question mark is placed on the guess square
-                        minesweeperGameArray[rowGuess][columnGuess] = " ? ";
-                        System.out.println();
-                    }
-                } else {
-                    printInvalid();
-                    return true;
-                }
-            }
+     * @param row the row index of the square
+     * @param col the column index of the square
+     * @return true if guess is in bounds, otherwise false
+     */
+    public boolean guess(int row, int col) {
+        // a question mark is placed on the guess square
+        if (!engine.guess(row, col)) {
+            printOutOfBounds(row, col);
+            return false;
         }
-        return userGuess;
+        out.println();
+        return true;
     } //guess method
 
     /**
-     * Method displays goodbye message and gracefully exits the game.
+     * Method displays goodbye message and gracefully ends the game.
      */
     public void quit() {
-        System.out.println();
-        System.out.println("Quitting the game...");
-        System.out.println("Bye!");
-        System.out.println();
-        System.exit(0);
+        out.println();
+        out.println("Quitting the game...");
+        out.println("Bye!");
+        out.println();
+        engine.quit();
     }
 
     /**
      * Method used within the {@link newMove} method.
-     * Increments {@code roundsCompleted}.
+     * Uses up a round.
      * Sets {@code noFog} variable to true
      */
     public void noFog() {
-        roundsCompleted++;
+        engine.useRound();
         noFog = true;
     }
 
+    /**
+     * Uses up a round and shows the odds view of the board in the next round only.
+     */
+    public void odds() {
+        engine.useRound();
+        showOdds = true;
+    }
+
+    /**
+     * Prints the odds view, in which every hidden square shows its chance of holding a
+     * mine as calculated by {@link MineProbabilities}.
+     */
+    public void printOddsArray() {
+        if (odds == null) {
+            odds = new MineProbabilities(board, MineProbabilities.DEFAULT_MAX_STATES,
+                oddsNanos);
+        }
+        odds.compute();
+        renderer.printOdds(out, odds);
+        if (!odds.isExact()) {
+            out.println("(odds are approximate: the frontier is too large to count)");
+        }
+    }
+
     /**
      * When the "nofog" command is used, this method prints out the {@code noFog} grid.
      * Implements command features of removing the "fog of war" for the next round only.
      * Less-than and greater-than symbols are placed on either side of the square's center.
      */
     public void printNoFogArray() {
-        for (int i = 0; i < noFogArray.length; i++) {
-            System.out.print(i + " |");
-            for (int j = 0; j < noFogArray[i].length; j++) {
-                //compares mine array and game array to validate mine locations
-                if (isMineArray[i][j] && minesweeperGameArray[i][j].trim().equals("F")) {
-                    //places noFog notation around mines which are correctly marked
-                    System.out.print("< " + minesweeperGameArray[i][j].trim() + ">");
-                } else if (isMineArray[i][j]) {
-                    //places noFog notation around mines which are not marked
-                    System.out.print("< " + minesweeperGameArray[i][j].trim() + ">");
-                } else {
-                    System.out.print(minesweeperGameArray[i][j]);
-                }
-                if (j < noFogArray[i].length - 1) {
-                    System.out.print("|");
-                }
-            }
-            System.out.println("|");
-        }
-        System.out.print("    ");
-        for (int i = 0; i < minesweeperGameArray[0].length; i++) {
-            System.out.print(i + "   ");
-        }
-        System.out.println();
+        renderer.print(out, true);
     }
 
     /**
      * Prints out error message when {@code stdIn} command input does not follow proper syntax.
      */
     public void printInvalid() {
-        System.err.println();
-        System.err.println("Invalid Command: Command not recognized!");
-        System.out.println();
+        err.println();
+        err.println("Invalid Command: Command not recognized!");
+        out.println();
+        messageShown();
     }
 
-/**
- * Returns the number of mines adjacent to the specified
- * square in the grid.
- *
- * @param row the row index of the square
- * @param col the column index of the square
- * @return the number of adjacent mines
- */
-    private int getNumAdjMines(int row, int col) {
-        int numAdjMines = 0;
-        //checks the rows and columns surrounding a square to find nearby mines
-        for (int i = row - 1; i <= row + 1; i++) {
-            if (!(i >= 0 && i < minesweeperGameArray.length)) {
-                continue;
-            }
-            for ( int j = col - 1; j <= col + 1; j++) {
-                if ((i == row && j == col) || (!(j >= 0 && j < minesweeperGameArray[0].length))) {
-                    continue;
-                } else {
-                    if (isMineArray[i][j]) {
-                        numAdjMines++;
-                    }
-                }
-            }
+    /**
+     * Tells the ANSI renderer, if there is one, that a message of more than one line was
+     * printed, so the next frame is drawn in full.
+     */
+    private void messageShown() {
+        if (ansi != null) {
+            ansi.messageShown();
         }
-        return numAdjMines;
     }
 
-/**
- * Indicates whether or not the square is in the game grid.
- *
- * @param row the row index of the square
- * @param col the column index of the square
- * @return true if the square is in the game grid; false otherwise
- */
-    private boolean isInBounds(int row, int col) {
+    /**
+     * Prints an error message for each index of the square that is outside of the grid.
+     * @param row the row index of the square
+     * @param col the column index of the square
+     */
+    private void printOutOfBounds(int row, int col) {
         //prints an error message for out of bound row input
-        if (row < 0 || row >= minesweeperGameArray.length) {
-            System.err.println("Invalid Command: Index " + row + " out of bounds for length "
-                + minesweeperGameArray.length);
+        if (row < 0 || row >= rows) {
+            err.println("Invalid Command: Index " + row + " out of bounds for length "
+                + rows);
         }
         //prints an error message for out of bound column input
-        if (col < 0 || col >= minesweeperGameArray[0].length) {
-            System.err.println("Invalid Command: Index " + col + " out of bounds for length "
-                + minesweeperGameArray.length);
+        if (col < 0 || col >= cols) {
+            err.println("Invalid Command: Index " + col + " out of bounds for length "
+                + cols);
         }
-        return (row >= 0 && row < minesweeperGameArray.length && col >= 0
-            && col < minesweeperGameArray[0].length);
+        messageShown();
     }
 
     /**
@@ -459,23 +585,7 @@ public class MinesweeperGame {
      * @return true when all mines have been marked and all squares are revealed, otherwise false
      */
     public boolean isWon() {
-        for (int i = 0; i < minesweeperGameArray.length; i++) {
-            for (int j = 0; j < minesweeperGameArray.length; j++) {
-                //checks if the game array still contains any blank or guess squares
-                if (minesweeperGameArray[i][j].equals("   ")
-                    || minesweeperGameArray[i][j].equals(" ? " )) {
-                    return false;
-                }
-                //if the mines squares are not marked, then returns false
-                if (isMineArray[i][j] && !minesweeperGameArray[i][j].equals(" F ")) {
-                    return false;
-                    //if a square is marked, but does not contain a mine, returns false
-                } else if (!isMineArray[i][j] && minesweeperGameArray[i][j].equals(" F ")) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return board.isSolved();
     }
 
     /**
@@ -483,38 +593,147 @@ public class MinesweeperGame {
      * Defines the sequence of methods and variables that are implemented during a round.
      */
     public void newMove() {
+        if (metrics == null) {
+            printRound();
+            promptUser();
+            return;
+        }
+        long allocated = metrics.allocatedBytes();
+        long start = System.nanoTime();
+        printRound();
+        metrics.record(GameMetrics.RENDER, System.nanoTime() - start);
+        promptUser();
+        metrics.recordMove(allocated);
+    }
+
+    /**
+     * Prints the board and the prompt at the start of a round, as one frame if the game
+     * prints through an {@link AsyncOutput}.
+     */
+    private void printRound() {
+        if (output == null) {
+            renderRound();
+            return;
+        }
+        output.beginFrame();
+        renderRound();
+        output.endFrame();
+    }
+
+    /**
+     * Prints the board and the prompt.
+     */
+    private void renderRound() {
+        //in ANSI mode only the changed squares are redrawn, unless a full frame is needed
+        if (ansi != null && !ansi.startFrame(out, noFog || showOdds)) {
+            ansi.printChanges(out, engine.getRoundsCompleted());
+            return;
+        }
         printRoundsCompleted();
         //checks if the noFog command was used
         if (noFog) {
             printNoFogArray();
             noFog = false;
+        } else if (showOdds) {
+            printOddsArray();
+            showOdds = false;
         } else {
             printMineField();
         }
         //reprints the prompt line
         printMineAlpha();
-        promptUser();
+    }
+
+    /**
+     * Prints the welcome banner and the first round of a game played one line at a time.
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        printWelcome();
+        printRound();
+    }
+
+    /**
+     * Plays one command line of a game started with {@link #start}, then prints the next
+     * round, or the win message if the command won the game.
+     * @param fullCommand the command line typed by the player
+     * @return true if the game is still being played; false if it was won, lost or quit
+     */
+    public boolean play(String fullCommand) {
+        apply(fullCommand);
+        if (engine.getStatus() == MinesweeperEngine.PLAYING) {
+            printRound();
+            return true;
+        }
+        recordScore();
+        if (engine.getStatus() == MinesweeperEngine.WON) {
+            printWin();
+        }
+        return false;
     }
 
     /**
      * Provides the main game loop by invoking other instance methods.
      */
     public void play() {
+        startNanos = System.nanoTime();
         printWelcome();
-        while (true) {
-            newMove();
-            if (isWon()) {
-                break;
+        try {
+            while (engine.getStatus() == MinesweeperEngine.PLAYING) {
+                newMove();
             }
+        } finally {
+            closeJournal();
+        }
+        recordScore();
+        if (engine.getStatus() == MinesweeperEngine.WON) {
+            printWin();
         }
-        printWin();
     } // play method
 
+    /**
+     * Closes the journal, if any. The journal of a game that was won or lost is deleted;
+     * a game that was quit, or stopped by its input running out, stays saved.
+     */
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            int status = engine.getStatus();
+            if (status == MinesweeperEngine.WON || status == MinesweeperEngine.LOST) {
+                journal.delete();
+            } else {
+                journal.close();
+            }
+        } catch (IOException e) {
+            err.println("Journal Write Error: " + e.getMessage());
+        }
+        journal = null;
+    }
+
+    /**
+     * Records the result of a game that was won or lost in the score store, if any.
+     */
+    private void recordScore() {
+        int status = engine.getStatus();
+        if (scores == null || (status != MinesweeperEngine.WON
+            && status != MinesweeperEngine.LOST)) {
+            return;
+        }
+        try {
+            scores.record(SeedCache.hash(board), rows, cols, engine.getRoundsCompleted(),
+                status, (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (IOException e) {
+            err.println("Score Store Write Error: " + e.getMessage());
+        }
+    }
+
     /**
      * Prints the win message to standard output.
      */
     private void printWin() {
-        System.out.println("" +
+        out.println("" +
                            " ░░░░░░░░░▄░░░░░░░░░░░░░░▄░░░░ \"So Doge\"\n" +
                            " ░░░░░░░░▌▒█░░░░░░░░░░░▄▀▒▌░░░\n" +
                            " ░░░░░░░░▌▒▒█░░░░░░░░▄▀▒▒▒▐░░░ \"Such Score\"\n" +
@@ -533,37 +752,22 @@ public class MinesweeperGame {
                            " ░░▀▄▒▒▒▒▒▒▒▒▒▒▒░▒░▒░▒▄▒▒▒▒▌░░\n" +
                            " ░░░░▀▄▒▒▒▒▒▒▒▒▒▒▄▄▄▀▒▒▒▒▄▀░░░ CONGRATULATIONS!\n" +
                            " ░░░░░░▀▄▄▄▄▄▄▀▀▀▒▒▒▒▒▄▄▀░░░░░ YOU HAVE WON!");
-        System.out.printf(" ░░░░░░░░░▒▒▒▒▒▒▒▒▒▒▀▀░░░░░░░░ SCORE: %.2f\n",  score());
+        out.printf(" ░░░░░░░░░▒▒▒▒▒▒▒▒▒▒▀▀░░░░░░░░ SCORE: %.2f\n",  engine.score());
 
     }
 
-    /**
-     * Calculates the score based on grid size and rounds played.
-     * A perfect score of 100 is only attained by playing as many rounds as (rows * columns).
-     * @return score calculation if rounds not equal to zero, otherwise no score is returned
-     */
-    private double score() {
-        if (roundsCompleted != 0) {
-            return ((minesweeperGameArray.length * minesweeperGameArray[0].length * 100.0)
-                / roundsCompleted);
-        } else {
-            return 0;
-        }
-    }
-
     /**
      * Prints the gameover message to standard output.
-     * Exits the game gracefully.
+     * The game ends gracefully once the round is over.
      */
     private void printLoss() {
-        System.out.println();
-        System.out.println(" Oh no... You revealed a mine!");
-        System.out.println("  __ _  __ _ _ __ ___   ___    _____   _____ _ __");
-        System.out.println(" / _` |/ _` | '_ ` _ \\ / _ \\  / _ \\ \\ / / _ \\ '__|");
-        System.out.println("| (_| | (_| | | | | | |  __/ | (_) \\ V /  __/ |");
-        System.out.println(" \\__, |\\__,_|_| |_| |_|\\___|  \\___/ \\_/ \\___|_|");
-        System.out.println(" |___/");
-        System.out.println();
-        System.exit(0);
+        out.println();
+        out.println(" Oh no... You revealed a mine!");
+        out.println("  __ _  __ _ _ __ ___   ___    _____   _____ _ __");
+        out.println(" / _` |/ _` | '_ ` _ \\ / _ \\  / _ \\ \\ / / _ \\ '__|");
+        out.println("| (_| | (_| | | | | | |  __/ | (_) \\ V /  __/ |");
+        out.println(" \\__, |\\__,_|_| |_| |_|\\___|  \\___/ \\_/ \\___|_|");
+        out.println(" |___/");
+        out.println();
     }
 }
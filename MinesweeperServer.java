@@ -0,0 +1,411 @@
+package cs1302.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.InputMismatchException;
+import java.util.Iterator;
+
+/**
+ * The {@link cs1302.game.MinesweeperServer} class hosts many games of Minesweeper over
+ * TCP, one per connection, all on a single thread driven by a {@link Selector}. Each
+ * player types the same commands as at the console, one per line, and is sent what the
+ * console game would print.
+ *
+ * <p>Every session gets its own {@link MinesweeperBoard#snapshot} of the seed board,
+ * which shares the mines and counts with every other session until it changes them, and
+ * its own {@link MinesweeperGame}; the buffers used to read commands, draw boards and
+ * print rounds are shared by all of them. Only the last {@value #SESSION_HISTORY} moves
+ * of a session can be undone, and a hint or odds view gets {@value #ANALYSIS_NANOS} ns,
+ * so one player asking for them cannot hold up the rest.
+ *
+ * <p>Lines are played one at a time, each one's output sent before the next is played:
+ * a session holds output of its own only while the player is not reading it, and the
+ * lines after it wait, unplayed, until it has been sent, so a player who sends commands
+ * without reading the replies cannot make the server buffer them. A session is dropped as soon as its game ends, the player disconnects, more than
+ * {@value #MAX_PENDING} bytes of output wait for it, or playing it fails, which leaves
+ * every other session running. An idle connection costs little more than its board.
+ */
+public class MinesweeperServer {
+
+    /** The longest command line accepted; longer lines close the connection. */
+    public static final int MAX_LINE = 256;
+
+    /** The most moves each session can undo. */
+    public static final int SESSION_HISTORY = 16;
+
+    /** The time a session's hint or odds view may take, in nanoseconds. */
+    public static final long ANALYSIS_NANOS = 5_000_000L;
+
+    /** The most bytes of output a session may have waiting to be sent. */
+    public static final int MAX_PENDING = 1 << 24;
+
+    private static final int READ_BUFFER = 1 << 14;
+    //connections waiting to be accepted; the default of 50 drops bursts of players
+    private static final int BACKLOG = 4096;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final MinesweeperBoard template;
+    //draws every session's board, one at a time on the selector thread
+    private final BoardRenderer renderer;
+    private final ByteBuffer input = ByteBuffer.allocateDirect(READ_BUFFER);
+    private final Frame frame = new Frame();
+    private final PrintStream out = new PrintStream(frame, false, StandardCharsets.UTF_8);
+    private ScoreStore scores;
+    private int sessionCount = 0;
+    private volatile boolean running = true;
+
+    /**
+     * The state kept for one connection.
+     */
+    private static class Session {
+
+        private final MinesweeperGame game;
+        private StringBuilder line;
+        private ByteBuffer pending;
+        //what the player sent after the line whose output is pending
+        private ByteBuffer unread;
+        private boolean over = false;
+
+        /**
+         * Creates a session playing a game.
+         * @param game the game to play
+         */
+        Session(MinesweeperGame game) {
+            this.game = game;
+        }
+    }
+
+    /**
+     * The stream every session's output is printed into before it is sent.
+     */
+    private static class Frame extends ByteArrayOutputStream {
+
+        /**
+         * Returns what has been printed so far, without copying it.
+         * @return a buffer over the printed bytes
+         */
+        ByteBuffer wrap() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    /**
+     * Creates a server whose sessions all play a copy of {@code template}.
+     * @param template the board every session starts from, with adjacency computed, which
+     *     is never played on itself
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public MinesweeperServer(MinesweeperBoard template, int port) throws IOException {
+        this.template = template;
+        renderer = new BoardRenderer(template);
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), BACKLOG);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Serves the games of a seed file on a port until the process is stopped, recording
+     * the result of every game won or lost if a score store file is given.
+     * @param args contains the port, the seed file path and optionally the score store
+     *     file path
+     */
+    public static void main(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: MinesweeperServer PORT SEED_FILE_PATH [SCORES_FILE]");
+            System.exit(1);
+        }
+        try {
+            MinesweeperServer server = new MinesweeperServer(SeedCache.getDefault().load(args[1]),
+                Integer.parseInt(args[0]));
+            if (args.length == 3) {
+                server.useScores(new ScoreStore(new File(args[2])));
+            }
+            System.out.println("Serving " + args[1] + " on port " + server.getPort());
+            server.serve();
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: MinesweeperServer PORT SEED_FILE_PATH [SCORES_FILE]");
+            System.exit(1);
+        } catch (InputMismatchException e) {
+            System.err.println("Seed File Malformed Error: Cannot"
+                + " create a mine field with that many rows and/or columns!");
+            System.exit(3);
+        } catch (IOException e) {
+            System.err.println("Server Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Records the result of every game won or lost from now on in a score store, which
+     * the server writes out and closes when it stops.
+     * @param scores the store to record to
+     */
+    public void useScores(ScoreStore scores) {
+        this.scores = scores;
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     * @return the local port
+     * @throws IOException if the port cannot be read
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Returns the number of sessions currently connected.
+     * @return the number of sessions
+     */
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * Accepts connections and plays their commands until {@link #close} is called.
+     * @throws IOException if the selector fails
+     */
+    public void serve() throws IOException {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isWritable()) {
+                            write(key);
+                        } else if (key.isReadable()) {
+                            read(key);
+                        }
+                    } catch (RuntimeException | Error e) {
+                        //only the session that failed is lost
+                        fail(key, e);
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+            if (scores != null) {
+                scores.close();
+            }
+        }
+    }
+
+    /**
+     * Stops the server; {@link #serve} closes every connection and returns. May be called
+     * from any thread.
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Accepts every pending connection and sends each one the start of its game. A
+     * connection that cannot be set up is closed without affecting the others.
+     * @throws IOException if the server socket fails
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            SelectionKey key = null;
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Session session = new Session(new MinesweeperGame(template.snapshot(), out,
+                    out, renderer));
+                session.game.useHistory(SESSION_HISTORY);
+                session.game.useAnalysisBudget(ANALYSIS_NANOS);
+                session.game.useScores(scores);
+                key = channel.register(selector, SelectionKey.OP_READ, session);
+                sessionCount++;
+                session.game.start();
+                send(key, session);
+            } catch (IOException | RuntimeException | Error e) {
+                if (key != null) {
+                    fail(key, e);
+                } else {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads what a player has sent and plays the complete lines of it.
+     * @param key the key of the player's connection
+     */
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        input.clear();
+        int read;
+        try {
+            read = channel.read(input);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            drop(key);
+            return;
+        }
+        input.flip();
+        play(key, (Session) key.attachment(), input);
+    }
+
+    /**
+     * Plays the complete lines of what a player has sent, sending the output of each
+     * before playing the next. If the player cannot take all of it, the rest of the bytes
+     * are kept in the session, unplayed, until it has been sent; otherwise the session
+     * goes back to being read.
+     * @param key the key of the player's connection
+     * @param session the session
+     * @param bytes what the player sent
+     */
+    private void play(SelectionKey key, Session session, ByteBuffer bytes) {
+        while (bytes.hasRemaining()) {
+            char c = (char) (bytes.get() & 0xFF);
+            if (session.line == null) {
+                session.line = new StringBuilder();
+            }
+            if (c == '\n') {
+                int end = session.line.length();
+                if (end > 0 && session.line.charAt(end - 1) == '\r') {
+                    end--;
+                }
+                session.over = !session.game.play(session.line.substring(0, end));
+                session.line.setLength(0);
+                if (!send(key, session)) {
+                    if (key.isValid() && bytes.hasRemaining()) {
+                        session.unread = ByteBuffer.allocate(bytes.remaining());
+                        session.unread.put(bytes).flip();
+                    }
+                    return;
+                }
+            } else if (session.line.length() < MAX_LINE) {
+                session.line.append(c);
+            } else {
+                drop(key);
+                return;
+            }
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Sends the output a player could not take earlier, then plays the lines that were
+     * waiting behind it.
+     * @param key the key of the player's connection
+     */
+    private void write(SelectionKey key) {
+        Session session = (Session) key.attachment();
+        try {
+            ((SocketChannel) key.channel()).write(session.pending);
+        } catch (IOException e) {
+            drop(key);
+            return;
+        }
+        if (session.pending.hasRemaining()) {
+            return;
+        }
+        session.pending = null;
+        if (session.over) {
+            drop(key);
+        } else if (session.unread != null) {
+            ByteBuffer unread = session.unread;
+            session.unread = null;
+            play(key, session, unread);
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Sends what has been printed for a session. Whatever the player cannot take yet is
+     * kept, and the session is only written to until it has been sent.
+     * @param key the key of the player's connection
+     * @param session the session the output belongs to
+     * @return true if all of it was sent and the game goes on; false if output is
+     *     pending or the session was dropped
+     */
+    private boolean send(SelectionKey key, Session session) {
+        out.flush();
+        ByteBuffer bytes = frame.wrap();
+        try {
+            ((SocketChannel) key.channel()).write(bytes);
+        } catch (IOException e) {
+            frame.reset();
+            drop(key);
+            return false;
+        }
+        frame.reset();
+        if (bytes.remaining() > MAX_PENDING) {
+            drop(key);
+            return false;
+        } else if (bytes.hasRemaining()) {
+            session.pending = ByteBuffer.allocate(bytes.remaining());
+            session.pending.put(bytes).flip();
+            key.interestOps(SelectionKey.OP_WRITE);
+            return false;
+        } else if (session.over) {
+            drop(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Closes the connection of a session that failed, throwing away whatever it had
+     * printed but not sent.
+     * @param key the key of the player's connection
+     * @param e what went wrong
+     */
+    private void fail(SelectionKey key, Throwable e) {
+        frame.reset();
+        if (key.attachment() instanceof Session) {
+            System.err.println("Session Error: " + e);
+            drop(key);
+        }
+    }
+
+    /**
+     * Closes a connection and forgets its session, unless it is already closed.
+     * @param key the key of the player's connection
+     */
+    private void drop(SelectionKey key) {
+        if (key.attachment() == null) {
+            return;
+        }
+        key.cancel();
+        key.attach(null);
+        sessionCount--;
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            //the connection is gone either way
+        }
+    }
+}
@@ -0,0 +1,629 @@
+package cs1302.game;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.InputMismatchException;
+
+/**
+ * The {@link cs1302.game.MinesweeperSolver} class plays a game through a
+ * {@link MinesweeperEngine} using only what a player can see: the counts of revealed
+ * squares and the total number of mines. It applies two kinds of deduction and guesses
+ * only when neither finds a move:
+ * <ul>
+ * <li>a single revealed square whose count is already met by known mines makes all of
+ * its other hidden neighbours safe, and one with exactly as many hidden neighbours as
+ * missing mines makes them all mines;</li>
+ * <li>when the hidden neighbours of one square are a subset of another's, the
+ * difference holds exactly the difference in missing mines.</li>
+ * </ul>
+ *
+ * <p>The solver listens to the board, so the revealed squares worth looking at again
+ * are queued as they change rather than found by scanning the board after each move.
+ * A flag placed by the player is not trusted: only the mines the solver has proved itself
+ * count as known, so a wrong flag never leads to a wrong deduction, and a flagged square
+ * proved safe is suggested to be revealed.
+ *
+ * <p>Finding a move can be given a time budget. Once it runs out, the best guess is
+ * returned instead of deducing further; the squares still queued are kept, so the next
+ * move picks up where this one stopped.
+ */
+public class MinesweeperSolver implements MinesweeperBoard.Listener {
+
+    //the queued squares checked between looks at the clock
+    private static final int CHECK_EVERY = 256;
+
+    private final MinesweeperEngine engine;
+    private final MinesweeperBoard board;
+    private final int rows;
+    private final int cols;
+
+    //revealed squares to check with the single square rule, then with the subset rule
+    private final IntQueue singleQueue = new IntQueue();
+    private final IntQueue subsetQueue = new IntQueue();
+    private final BitSet inSingleQueue = new BitSet();
+    private final BitSet inSubsetQueue = new BitSet();
+
+    //moves already deduced but not yet made, as index * 2 plus one for a mine
+    private final IntQueue pending = new IntQueue();
+
+    //the squares proved to hold mines, whether or not they are flagged yet
+    private final BitSet knownMines = new BitSet();
+    private int knownMineCount = 0;
+
+    //revealed squares that may still have hidden neighbours, pruned when guessing
+    private int[] frontier = new int[64];
+    private int frontierSize = 0;
+    private final BitSet inFrontier = new BitSet();
+
+    //hidden squares before this index are all revealed, flagged or next to a number
+    private int unconstrainedCursor = 0;
+
+    private final int[] unknownA = new int[8];
+    private final int[] unknownB = new int[8];
+    private int moveRow;
+    private int moveCol;
+    private boolean moveIsGuess;
+    private int guesses = 0;
+    private int deductions = 0;
+    private long maxNanos = Long.MAX_VALUE;
+
+    /**
+     * Creates a solver for the game played by an engine. The revealed squares already
+     * on the board are queued once; after that the solver follows changes as they happen.
+     * @param engine the engine playing the game
+     */
+    public MinesweeperSolver(MinesweeperEngine engine) {
+        this.engine = engine;
+        this.board = engine.getBoard();
+        this.rows = board.getRows();
+        this.cols = board.getCols();
+        board.addListener(this);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if ((board.get(i, j) & MinesweeperBoard.REVEALED) != 0) {
+                    enqueue(i * cols + j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rates every seed file named on the command line by solving it and printing the
+     * outcome, the number of guesses it needed and the time taken.
+     * @param args contains the seed file paths
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: MinesweeperSolver SEED_FILE_PATH...");
+            System.exit(1);
+        }
+        for (String seedPath : args) {
+            try {
+                MinesweeperBoard board = SeedLoader.load(seedPath);
+                long start = System.nanoTime();
+                MinesweeperSolver solver = new MinesweeperSolver(new MinesweeperEngine(board));
+                GameResult result = solver.solve();
+                System.out.printf("%s: %s guesses=%d deductions=%d time=%.1f ms%n", seedPath,
+                    result, solver.getGuesses(), solver.getDeductions(),
+                    (System.nanoTime() - start) / 1e6);
+            } catch (InputMismatchException e) {
+                System.out.println(seedPath + ": Seed File Malformed Error");
+            } catch (IOException e) {
+                System.out.println(seedPath + ": Seed File Not Found Error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Plays moves until the game is won or lost.
+     * @return the outcome of the game
+     */
+    public GameResult solve() {
+        while (engine.getStatus() == MinesweeperEngine.PLAYING) {
+            int move = findMove();
+            if (move == CommandParser.MARK) {
+                engine.mark(moveRow, moveCol);
+            } else if (move == CommandParser.REVEAL) {
+                engine.reveal(moveRow, moveCol);
+            } else {
+                break;
+            }
+        }
+        return engine.result(false);
+    }
+
+    /**
+     * Returns the number of guesses made so far.
+     * @return the number of guesses
+     */
+    public int getGuesses() {
+        return guesses;
+    }
+
+    /**
+     * Returns the number of moves found by deduction so far.
+     * @return the number of deduced moves
+     */
+    public int getDeductions() {
+        return deductions;
+    }
+
+    /**
+     * Limits the time each call to {@link #findMove} spends deducing before it settles
+     * for a guess. There is no limit until this is called.
+     * @param maxNanos the time budget of one move, in nanoseconds
+     */
+    public void setTimeBudget(long maxNanos) {
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Returns the row of the move found by the last call to {@link #findMove}.
+     * @return the row index
+     */
+    public int getMoveRow() {
+        return moveRow;
+    }
+
+    /**
+     * Returns the column of the move found by the last call to {@link #findMove}.
+     * @return the column index
+     */
+    public int getMoveCol() {
+        return moveCol;
+    }
+
+    /**
+     * Indicates whether or not the move found by the last call to {@link #findMove} is a
+     * guess rather than a deduction.
+     * @return true if the move is a guess; false otherwise
+     */
+    public boolean isMoveGuess() {
+        return moveIsGuess;
+    }
+
+    /**
+     * Finds the next move without making it. The square is available from
+     * {@link #getMoveRow} and {@link #getMoveCol}. A move found once the time budget has
+     * run out is a guess.
+     * @return {@link CommandParser#REVEAL} or {@link CommandParser#MARK}, or
+     *     {@link CommandParser#INVALID} if every square is already revealed, flagged or
+     *     proved to be a mine
+     */
+    public int findMove() {
+        moveIsGuess = false;
+        long start = System.nanoTime();
+        for (int checked = 1; true; checked++) {
+            //a deduced move stays queued until it is made, in case a hint is ignored
+            while (!pending.isEmpty()) {
+                int action = pending.peek();
+                int index = action >>> 1;
+                boolean mine = (action & 1) != 0;
+                int row = index / cols;
+                int cell = board.get(row, index - row * cols);
+                if ((cell & (mine ? MinesweeperBoard.FLAG : MinesweeperBoard.REVEALED)) == 0) {
+                    return move(index, mine);
+                }
+                pending.poll();
+            }
+            if (checked % CHECK_EVERY == 0 && System.nanoTime() - start > maxNanos) {
+                return guess();
+            }
+            if (!singleQueue.isEmpty()) {
+                int index = singleQueue.poll();
+                inSingleQueue.clear(index);
+                applySingleRule(index);
+            } else if (!subsetQueue.isEmpty()) {
+                int index = subsetQueue.poll();
+                inSubsetQueue.clear(index);
+                applySubsetRule(index);
+            } else if (!applyCountRule()) {
+                return guess();
+            }
+        }
+    }
+
+    /**
+     * Queues the revealed squares around a changed square to be checked again.
+     * @param index the flat index of the changed square
+     */
+    @Override
+    public void squareChanged(int index) {
+        int row = index / cols;
+        int col = index - row * cols;
+        int rowEnd = Math.min(row + 1, rows - 1);
+        int colEnd = Math.min(col + 1, cols - 1);
+        for (int i = Math.max(row - 1, 0); i <= rowEnd; i++) {
+            for (int j = Math.max(col - 1, 0); j <= colEnd; j++) {
+                if ((board.get(i, j) & MinesweeperBoard.REVEALED) != 0) {
+                    enqueue(i * cols + j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a revealed square for both rules and adds it to the frontier.
+     * @param index the flat index of the revealed square
+     */
+    private void enqueue(int index) {
+        if (!inSingleQueue.get(index)) {
+            inSingleQueue.set(index);
+            singleQueue.add(index);
+        }
+        if (!inSubsetQueue.get(index)) {
+            inSubsetQueue.set(index);
+            subsetQueue.add(index);
+        }
+        if (!inFrontier.get(index)) {
+            inFrontier.set(index);
+            if (frontierSize == frontier.length) {
+                frontier = Arrays.copyOf(frontier, frontierSize * 2);
+            }
+            frontier[frontierSize++] = index;
+        }
+    }
+
+    /**
+     * Applies the single square rule to a revealed square.
+     * @param index the flat index of the revealed square
+     */
+    private void applySingleRule(int index) {
+        int unknown = unknownNeighbours(index, unknownA);
+        if (unknown == 0) {
+            return;
+        }
+        int missing = missingMines(index);
+        if (missing == 0) {
+            deduce(unknownA, unknown, false);
+        } else if (missing == unknown) {
+            deduce(unknownA, unknown, true);
+        }
+    }
+
+    /**
+     * Applies the subset rule between a revealed square and the revealed squares up to
+     * two rows or columns away, which are the only ones that can share hidden neighbours.
+     * @param index the flat index of the revealed square
+     */
+    private void applySubsetRule(int index) {
+        int unknown = unknownNeighbours(index, unknownA);
+        if (unknown == 0) {
+            return;
+        }
+        int missing = missingMines(index);
+        int row = index / cols;
+        int col = index - row * cols;
+        int rowEnd = Math.min(row + 2, rows - 1);
+        int colEnd = Math.min(col + 2, cols - 1);
+        for (int i = Math.max(row - 2, 0); i <= rowEnd; i++) {
+            for (int j = Math.max(col - 2, 0); j <= colEnd; j++) {
+                int other = i * cols + j;
+                if (other == index || (board.get(i, j) & MinesweeperBoard.REVEALED) == 0) {
+                    continue;
+                }
+                int otherUnknown = unknownNeighbours(other, unknownB);
+                if (otherUnknown <= unknown) {
+                    continue;
+                }
+                //the other square's hidden neighbours minus ours hold the extra mines
+                int extra = subtract(unknownB, otherUnknown, unknownA, unknown);
+                if (extra < 0) {
+                    continue;
+                }
+                int extraMissing = missingMines(other) - missing;
+                if (extraMissing == 0) {
+                    deduce(unknownB, extra, false);
+                    return;
+                } else if (extraMissing == extra) {
+                    deduce(unknownB, extra, true);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the total mine count: when every mine is known the other hidden squares
+     * are safe, and when as many mines are left as unknown squares they are all mines.
+     * @return true if moves were deduced; false otherwise
+     */
+    private boolean applyCountRule() {
+        int missing = board.getMineCount() - knownMineCount;
+        int unknown = rows * cols - board.getRevealedCount() - knownMineCount;
+        if (unknown == 0 || (missing != 0 && missing != unknown)) {
+            return false;
+        }
+        int squares = rows * cols;
+        for (int index = 0; index < squares; index++) {
+            if (isUnknown(index)) {
+                deduce(index, missing != 0);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks the hidden square least likely to be a mine and returns it as a guess.
+     * Each revealed square spreads its missing mines evenly over its hidden neighbours,
+     * and squares away from every number get the average density of the rest of the board.
+     * @return {@link CommandParser#REVEAL}, or {@link CommandParser#INVALID} if there is
+     *     no hidden square left
+     */
+    private int guess() {
+        int best = -1;
+        double bestChance = 2;
+        int kept = 0;
+        for (int k = 0; k < frontierSize; k++) {
+            int index = frontier[k];
+            int unknown = unknownNeighbours(index, unknownA);
+            if (unknown == 0) {
+                inFrontier.clear(index);
+                continue;
+            }
+            frontier[kept++] = index;
+            double chance = (double) missingMines(index) / unknown;
+            int square = firstUnflagged(unknownA, unknown);
+            if (chance < bestChance && square >= 0) {
+                bestChance = chance;
+                best = square;
+            }
+        }
+        frontierSize = kept;
+        int unconstrained = nextUnconstrained();
+        if (unconstrained >= 0) {
+            int missing = board.getMineCount() - knownMineCount;
+            int unknown = rows * cols - board.getRevealedCount() - knownMineCount;
+            if ((double) missing / unknown < bestChance) {
+                best = unconstrained;
+            }
+        }
+        if (best < 0) {
+            return CommandParser.INVALID;
+        }
+        guesses++;
+        int move = move(best, false);
+        moveIsGuess = true;
+        return move;
+    }
+
+    /**
+     * Returns the next hidden, unflagged square that has no revealed neighbour.
+     * @return the flat index of the square, or -1 if there is none
+     */
+    private int nextUnconstrained() {
+        int squares = rows * cols;
+        for (; unconstrainedCursor < squares; unconstrainedCursor++) {
+            if (isUnknown(unconstrainedCursor) && !isFlagged(unconstrainedCursor)
+                && !hasRevealedNeighbour(unconstrainedCursor)) {
+                return unconstrainedCursor;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first of some squares that the player has not flagged, which is the
+     * one a guess is made on.
+     * @param squares the flat indices of the squares
+     * @param count the number of squares
+     * @return the flat index of the square, or -1 if they are all flagged
+     */
+    private int firstUnflagged(int[] squares, int count) {
+        for (int k = 0; k < count; k++) {
+            if (!isFlagged(squares[k])) {
+                return squares[k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates whether or not any neighbour of a square has been revealed.
+     * @param index the flat index of the square
+     * @return true if a neighbour is revealed; false otherwise
+     */
+    private boolean hasRevealedNeighbour(int index) {
+        int row = index / cols;
+        int col = index - row * cols;
+        int rowEnd = Math.min(row + 1, rows - 1);
+        int colEnd = Math.min(col + 1, cols - 1);
+        for (int i = Math.max(row - 1, 0); i <= rowEnd; i++) {
+            for (int j = Math.max(col - 1, 0); j <= colEnd; j++) {
+                if ((board.get(i, j) & MinesweeperBoard.REVEALED) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Queues a deduced move for each of the given squares.
+     * @param squares the flat indices of the squares
+     * @param count the number of squares
+     * @param mine true if the squares are mines; false if they are safe
+     */
+    private void deduce(int[] squares, int count, boolean mine) {
+        for (int k = 0; k < count; k++) {
+            deduce(squares[k], mine);
+        }
+    }
+
+    /**
+     * Queues a deduced move for a square, remembering it as a known mine if it is one.
+     * @param index the flat index of the square
+     * @param mine true if the square is a mine; false if it is safe
+     */
+    private void deduce(int index, boolean mine) {
+        if (mine && !knownMines.get(index)) {
+            knownMines.set(index);
+            knownMineCount++;
+        }
+        pending.add(index * 2 + (mine ? 1 : 0));
+        deductions++;
+    }
+
+    /**
+     * Records a move on a square.
+     * @param index the flat index of the square
+     * @param mine true to flag the square; false to reveal it
+     * @return the command of the move
+     */
+    private int move(int index, boolean mine) {
+        moveRow = index / cols;
+        moveCol = index - moveRow * cols;
+        return mine ? CommandParser.MARK : CommandParser.REVEAL;
+    }
+
+    /**
+     * Indicates whether or not a square is neither revealed nor proved to be a mine.
+     * @param index the flat index of the square
+     * @return true if the square is still unknown; false otherwise
+     */
+    private boolean isUnknown(int index) {
+        int row = index / cols;
+        return !knownMines.get(index)
+            && (board.get(row, index - row * cols) & MinesweeperBoard.REVEALED) == 0;
+    }
+
+    /**
+     * Indicates whether or not the player has flagged a square.
+     * @param index the flat index of the square
+     * @return true if the square is flagged; false otherwise
+     */
+    private boolean isFlagged(int index) {
+        int row = index / cols;
+        return board.isFlagged(row, index - row * cols);
+    }
+
+    /**
+     * Stores the neighbours of a revealed square that are neither revealed nor known
+     * mines, flagged or not, in ascending index order. A square that is no longer
+     * revealed has none.
+     * @param index the flat index of the square
+     * @param unknown the array receiving the neighbours
+     * @return the number of neighbours stored
+     */
+    private int unknownNeighbours(int index, int[] unknown) {
+        int row = index / cols;
+        int col = index - row * cols;
+        //a guess, mark or undo may have hidden the square since it was queued
+        if ((board.get(row, col) & MinesweeperBoard.REVEALED) == 0) {
+            return 0;
+        }
+        int count = 0;
+        int rowEnd = Math.min(row + 1, rows - 1);
+        int colEnd = Math.min(col + 1, cols - 1);
+        for (int i = Math.max(row - 1, 0); i <= rowEnd; i++) {
+            for (int j = Math.max(col - 1, 0); j <= colEnd; j++) {
+                int other = i * cols + j;
+                if (!knownMines.get(other)
+                    && (board.get(i, j) & MinesweeperBoard.REVEALED) == 0) {
+                    unknown[count++] = other;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns how many of a revealed square's adjacent mines are not known yet.
+     * @param index the flat index of the revealed square
+     * @return the number of missing mines
+     */
+    private int missingMines(int index) {
+        int row = index / cols;
+        int col = index - row * cols;
+        int known = 0;
+        int rowEnd = Math.min(row + 1, rows - 1);
+        int colEnd = Math.min(col + 1, cols - 1);
+        for (int i = Math.max(row - 1, 0); i <= rowEnd; i++) {
+            for (int j = Math.max(col - 1, 0); j <= colEnd; j++) {
+                if (knownMines.get(i * cols + j)) {
+                    known++;
+                }
+            }
+        }
+        return board.getNumAdjMines(row, col) - known;
+    }
+
+    /**
+     * Removes the squares of {@code small} from {@code large}, keeping the rest at the
+     * front of {@code large}. Both arrays are in ascending order.
+     * @param large the larger set of squares, which is overwritten with the difference
+     * @param largeCount the number of squares in {@code large}
+     * @param small the smaller set of squares
+     * @param smallCount the number of squares in {@code small}
+     * @return the size of the difference, or -1 if {@code small} is not a subset
+     */
+    private static int subtract(int[] large, int largeCount, int[] small, int smallCount) {
+        int kept = 0;
+        int s = 0;
+        for (int l = 0; l < largeCount; l++) {
+            if (s < smallCount && small[s] == large[l]) {
+                s++;
+            } else if (s < smallCount && small[s] < large[l]) {
+                return -1;
+            } else {
+                large[kept++] = large[l];
+            }
+        }
+        return s == smallCount ? kept : -1;
+    }
+
+    /**
+     * A growable ring buffer of ints.
+     */
+    private static class IntQueue {
+
+        private int[] items = new int[64];
+        private int head = 0;
+        private int size = 0;
+
+        /**
+         * Indicates whether or not the queue is empty.
+         * @return true if there are no items; false otherwise
+         */
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Adds an item at the back of the queue.
+         * @param item the item to add
+         */
+        void add(int item) {
+            if (size == items.length) {
+                int[] grown = new int[items.length * 2];
+                int firstPart = items.length - head;
+                System.arraycopy(items, head, grown, 0, firstPart);
+                System.arraycopy(items, 0, grown, firstPart, head);
+                items = grown;
+                head = 0;
+            }
+            items[(head + size) & (items.length - 1)] = item;
+            size++;
+        }
+
+        /**
+         * Returns the item at the front of the queue without removing it.
+         * @return the front item
+         */
+        int peek() {
+            return items[head];
+        }
+
+        /**
+         * Removes and returns the item at the front of the queue.
+         * @return the front item
+         */
+        int poll() {
+            int item = items[head];
+            head = (head + 1) & (items.length - 1);
+            size--;
+            return item;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package cs1302.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.InputMismatchException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link cs1302.game.ParallelRunner} class plays a directory of recorded games, laid
+ * out as for {@link BatchReplay}, on every core at once. The games are split into
+ * tasks on a work-stealing {@link ForkJoinPool}. Each worker thread keeps its own
+ * {@link BatchReplay}, so games never share a board or any output, and the outcomes are
+ * totalled with lock-free adders rather than a synchronized collection.
+ */
+public class ParallelRunner {
+
+    /** The number of games a task plays itself rather than splitting further. */
+    private static final int GAMES_PER_TASK = 8;
+
+    private final ThreadLocal<BatchReplay> replays = ThreadLocal.withInitial(BatchReplay::new);
+    private final LongAdder[] statusCounts = {
+        new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()
+    };
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rounds = new LongAdder();
+    private final DoubleAdder scores = new DoubleAdder();
+
+    /**
+     * Plays every script in the directory named by the first argument, using as many
+     * threads as the second argument asks for, or one per core.
+     * @param args contains the script directory and optional thread count
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: ParallelRunner SCRIPT_DIR [THREADS]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length == 2) {
+            try {
+                threads = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads <= 0) {
+                System.err.println("Usage: ParallelRunner SCRIPT_DIR [THREADS]");
+                System.exit(1);
+            }
+        }
+        File[] scripts = BatchReplay.listScripts(new File(args[0]));
+        if (scripts == null) {
+            System.err.println("Script Directory Not Found Error: " + args[0]);
+            System.exit(2);
+        }
+        new ParallelRunner().run(scripts, threads);
+    }
+
+    /**
+     * Plays the scripts on a pool of {@code threads} threads and prints the totals.
+     * @param scripts the scripts to play
+     * @param threads the number of worker threads
+     */
+    public void run(File[] scripts, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new Games(scripts, 0, scripts.length));
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long played = scripts.length - failed.sum();
+        System.out.printf("Played %d games on %d threads in %.3f s (%.1f games/sec)%n",
+            played, threads, seconds, played / Math.max(seconds, 1e-9));
+        for (int status = 0; status < statusCounts.length; status++) {
+            System.out.printf("  %-10s %d%n", GameResult.statusName(status),
+                statusCounts[status].sum());
+        }
+        System.out.printf("  %-10s %d%n", "FAILED", failed.sum());
+        System.out.printf("  Total rounds: %d, total score: %.2f%n", rounds.sum(),
+            scores.sum());
+    }
+
+    /**
+     * Plays one game on the calling thread's own replay and adds up its outcome.
+     * @param script the script to play
+     */
+    private void play(File script) {
+        try {
+            GameResult result = replays.get().play(BatchReplay.seedFor(script), script, false);
+            statusCounts[result.getStatus()].increment();
+            rounds.add(result.getRoundsCompleted());
+            scores.add(result.getScore());
+        } catch (InputMismatchException | IOException e) {
+            failed.increment();
+        }
+    }
+
+    /**
+     * A task playing a range of the scripts, splitting itself in half until the range
+     * is small enough to play directly.
+     */
+    private class Games extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File[] scripts;
+        private final int from;
+        private final int to;
+
+        /**
+         * Creates a task for the scripts from {@code from} up to, not including, {@code to}.
+         * @param scripts all of the scripts
+         * @param from the index of the first script to play
+         * @param to the index just past the last script to play
+         */
+        Games(File[] scripts, int from, int to) {
+            this.scripts = scripts;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Plays the range, or splits it and plays both halves in parallel.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    play(scripts[i]);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Games(scripts, from, middle), new Games(scripts, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,744 @@
+package cs1302.game;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The {@link cs1302.game.ScoreStore} class keeps the results of finished games in an
+ * append-only file, and answers leaderboard queries over them: the top scores, a
+ * percentile of the scores, or a histogram of them, over every game, the games of one
+ * seed, or the games of one board size.
+ *
+ * <p>Results are kept in memory as columns of primitive arrays, under 40 bytes a game,
+ * with an index of the games of each seed and of each board size. Scores are not stored
+ * at all; they are computed from the board size and rounds like {@link
+ * MinesweeperEngine#score}, so a game won with reveals that open whole regions scores
+ * above 100. The file holds the same columns in blocks of up to
+ * {@value #BLOCK_SIZE} results, each with a checksum, so a block cut short by a crash is
+ * dropped when the file is next opened for writing. Results are written a block at a
+ * time, when enough have gathered or when the store is flushed or closed.
+ *
+ * <p>Only one store at a time may have a file open for writing, which it locks. Any
+ * number may open it read-only, even while it is written to; a read-only store never
+ * changes the file, and stops at a block that is not whole yet instead of cutting it off.
+ *
+ * <p>A store is safe to use from many threads.
+ */
+public class ScoreStore implements Closeable {
+
+    /** Queries every result. */
+    public static final int ALL = 0;
+    /** Queries the results of the seed with a given id. */
+    public static final int BY_SEED = 1;
+    /** Queries the results of a given board size, as made by {@link #sizeKey}. */
+    public static final int BY_SIZE = 2;
+
+    /** The most results written to the file in one block. */
+    public static final int BLOCK_SIZE = 4096;
+
+    private static final byte[] MAGIC = {'M', 'S', 'W', 'S'};
+    private static final int VERSION = 1;
+    //the count and checksum in front of each block
+    private static final int BLOCK_HEADER = 8;
+    //the bytes of one result in a block: seed, rows, cols, rounds, status and duration
+    private static final int RECORD = 8 + 4 + 4 + 4 + 1 + 8;
+
+    private final File file;
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private long[] seeds = new long[16];
+    private int[] rows = new int[16];
+    private int[] cols = new int[16];
+    private int[] rounds = new int[16];
+    private byte[] statuses = new byte[16];
+    private long[] millis = new long[16];
+    private int size = 0;
+    //the results not written to the file yet start here
+    private int written = 0;
+    private final Map<Long, IntList> bySeed = new HashMap<>();
+    private final Map<Long, IntList> bySize = new HashMap<>();
+
+    /**
+     * A growable list of result indices.
+     */
+    private static class IntList {
+
+        private int[] items = new int[4];
+        private int size = 0;
+
+        /**
+         * Adds an index to the end of the list.
+         * @param item the index
+         */
+        void add(int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+    }
+
+    /**
+     * Opens a score store for writing, loading every result already in the file, or
+     * creating the file if there is none.
+     * @param file the file of the store
+     * @throws IOException if the file cannot be read or written, is not a score store, or
+     *     is open for writing by another store
+     */
+    public ScoreStore(File file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * Opens a score store, loading every result already in the file.
+     * @param file the file of the store
+     * @param readOnly true to only query the file, which must exist and is never changed;
+     *     false to record results too, creating the file if there is none
+     * @throws IOException if the file cannot be read or written, is not a score store, or
+     *     is open for writing by another store when opened for writing
+     */
+    public ScoreStore(File file, boolean readOnly) throws IOException {
+        this.file = file;
+        this.readOnly = readOnly;
+        if (readOnly) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } else {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        try {
+            if (!readOnly) {
+                lock();
+            }
+            load();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Prints a leaderboard query over a score store.
+     * @param args the store file, then {@code top K}, {@code percentile P} or
+     *     {@code histogram BINS}, optionally followed by {@code seed ID} or
+     *     {@code size ROWSxCOLS}
+     */
+    public static void main(String[] args) {
+        if (args.length != 3 && args.length != 5) {
+            usage();
+        }
+        int scope = ALL;
+        long key = 0;
+        try (ScoreStore store = new ScoreStore(new File(args[0]), true)) {
+            if (args.length == 5 && args[3].equals("seed")) {
+                scope = BY_SEED;
+                key = Long.parseUnsignedLong(args[4], 16);
+            } else if (args.length == 5 && args[3].equals("size")) {
+                String[] size = args[4].split("x");
+                if (size.length != 2) {
+                    usage();
+                }
+                scope = BY_SIZE;
+                key = sizeKey(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+            } else if (args.length == 5) {
+                usage();
+            }
+            if (args[1].equals("top")) {
+                int[] top = store.top(scope, key, Integer.parseInt(args[2]));
+                for (int rank = 0; rank < top.length; rank++) {
+                    int index = top[rank];
+                    System.out.printf("%4d. %8.2f  seed %016x  %dx%d  %d rounds  %.1fs\n",
+                        rank + 1, store.getScore(index), store.getSeed(index),
+                        store.getRows(index), store.getCols(index), store.getRounds(index),
+                        store.getMillis(index) / 1000.0);
+                }
+            } else if (args[1].equals("percentile")) {
+                System.out.printf("%.2f\n",
+                    store.percentile(scope, key, Double.parseDouble(args[2])));
+            } else if (args[1].equals("histogram")) {
+                printHistogram(store, scope, key, Integer.parseInt(args[2]));
+            } else {
+                usage();
+            }
+        } catch (NumberFormatException e) {
+            usage();
+        } catch (IOException e) {
+            System.err.println("Score Store Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Prints how to use {@link #main} and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: ScoreStore FILE top K|percentile P|histogram BINS"
+            + " [seed ID|size ROWSxCOLS]");
+        System.exit(1);
+    }
+
+    /**
+     * Prints a histogram of the scores won, in equal bins from the lowest score to the
+     * highest.
+     * @param store the store to query
+     * @param scope one of {@link #ALL}, {@link #BY_SEED} or {@link #BY_SIZE}
+     * @param key the seed id or size key, ignored for {@link #ALL}
+     * @param bins the number of bins
+     */
+    private static void printHistogram(ScoreStore store, int scope, long key, int bins) {
+        double low = store.percentile(scope, key, 0);
+        double high = store.percentile(scope, key, 100);
+        if (Double.isNaN(low) || bins <= 0) {
+            return;
+        }
+        long[] counts = store.histogram(scope, key, low, high, bins);
+        long most = 1;
+        for (long count : counts) {
+            most = Math.max(most, count);
+        }
+        double width = (high - low) / bins;
+        for (int bin = 0; bin < bins; bin++) {
+            String bar = "#".repeat((int) (counts[bin] * 40 / most));
+            System.out.printf("%8.2f - %8.2f %9d %s\n", low + bin * width,
+                low + (bin + 1) * width, counts[bin], bar);
+        }
+    }
+
+    /**
+     * Returns the key of a board size, for queries {@link #BY_SIZE}.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return the key of the size
+     */
+    public static long sizeKey(int rows, int cols) {
+        return (long) rows << 32 | cols & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Records the result of a finished game. It is written to the file once a block of
+     * results has gathered, or when the store is flushed or closed.
+     * @param seed the id of the game's seed, as made by {@link SeedCache#hash}
+     * @param rows the number of rows of the board
+     * @param cols the number of columns of the board
+     * @param roundsCompleted the number of rounds completed
+     * @param status the {@link MinesweeperEngine} status the game ended with
+     * @param durationMillis how long the game took, in milliseconds
+     * @throws IOException if a block of results cannot be written
+     * @throws IllegalStateException if the store is read-only
+     */
+    public synchronized void record(long seed, int rows, int cols, int roundsCompleted,
+        int status, long durationMillis) throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException(file + " is open read-only");
+        }
+        if (size == seeds.length) {
+            grow();
+        }
+        seeds[size] = seed;
+        this.rows[size] = rows;
+        this.cols[size] = cols;
+        rounds[size] = roundsCompleted;
+        statuses[size] = (byte) status;
+        millis[size] = durationMillis;
+        index(size++);
+        if (size - written >= BLOCK_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes every result recorded so far to the file and forces it to disk.
+     * @throws IOException if the results cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (written == size) {
+            return;
+        }
+        while (written < size) {
+            int count = Math.min(size - written, BLOCK_SIZE);
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER + count * RECORD);
+            block.position(BLOCK_HEADER);
+            for (int i = written; i < written + count; i++) {
+                block.putLong(seeds[i]);
+            }
+            for (int i = written; i < written + count; i++) {
+                block.putInt(rows[i]);
+            }
+            for (int i = written; i < written + count; i++) {
+                block.putInt(cols[i]);
+            }
+            for (int i = written; i < written + count; i++) {
+                block.putInt(rounds[i]);
+            }
+            block.put(statuses, written, count);
+            for (int i = written; i < written + count; i++) {
+                block.putLong(millis[i]);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(block.array(), BLOCK_HEADER, count * RECORD);
+            block.putInt(0, count).putInt(4, (int) crc.getValue());
+            block.flip();
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+            written += count;
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Writes every result recorded and closes the file.
+     * @throws IOException if the results cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the number of results recorded.
+     * @return the number of results
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of the seed of a result.
+     * @param index the index of the result
+     * @return the seed id
+     */
+    public synchronized long getSeed(int index) {
+        return seeds[index];
+    }
+
+    /**
+     * Returns the number of rows of the board of a result.
+     * @param index the index of the result
+     * @return the number of rows
+     */
+    public synchronized int getRows(int index) {
+        return rows[index];
+    }
+
+    /**
+     * Returns the number of columns of the board of a result.
+     * @param index the index of the result
+     * @return the number of columns
+     */
+    public synchronized int getCols(int index) {
+        return cols[index];
+    }
+
+    /**
+     * Returns the number of rounds completed in a result.
+     * @param index the index of the result
+     * @return the number of rounds completed
+     */
+    public synchronized int getRounds(int index) {
+        return rounds[index];
+    }
+
+    /**
+     * Returns the status a game ended with.
+     * @param index the index of the result
+     * @return one of the {@link MinesweeperEngine} status constants
+     */
+    public synchronized int getStatus(int index) {
+        return statuses[index];
+    }
+
+    /**
+     * Returns how long a game took.
+     * @param index the index of the result
+     * @return the duration, in milliseconds
+     */
+    public synchronized long getMillis(int index) {
+        return millis[index];
+    }
+
+    /**
+     * Returns the score of a result.
+     * @param index the index of the result
+     * @return the score, which is zero unless the game was won
+     */
+    public synchronized double getScore(int index) {
+        return score(index);
+    }
+
+    /**
+     * Returns the best results that were won, best first. Higher scores are better; of
+     * equal scores, the faster game is better, and then the earlier one.
+     * @param scope one of {@link #ALL}, {@link #BY_SEED} or {@link #BY_SIZE}
+     * @param key the seed id or size key, ignored for {@link #ALL}
+     * @param k the most results to return
+     * @return the indices of the results
+     */
+    public synchronized int[] top(int scope, long key, int k) {
+        IntList list = select(scope, key);
+        int n = list == null ? size : list.size;
+        //a min-heap of the best k so far, with the worst of them at the root; it never
+        //holds more than the results in scope, however large k is
+        int[] heap = new int[Math.max(Math.min(k, n), 0)];
+        int count = 0;
+        for (int i = 0; i < n && k > 0; i++) {
+            int index = list == null ? i : list.items[i];
+            if (statuses[index] != MinesweeperEngine.WON) {
+                continue;
+            }
+            if (count < k) {
+                heap[count] = index;
+                siftUp(heap, count++);
+            } else if (better(index, heap[0])) {
+                heap[0] = index;
+                siftDown(heap, 0, count);
+            }
+        }
+        //taking the worst off the heap each time leaves it sorted best first
+        for (int end = count - 1; end > 0; end--) {
+            int worst = heap[0];
+            heap[0] = heap[end];
+            heap[end] = worst;
+            siftDown(heap, 0, end);
+        }
+        return count == heap.length ? heap : Arrays.copyOf(heap, count);
+    }
+
+    /**
+     * Returns a percentile of the scores won, by nearest rank.
+     * @param scope one of {@link #ALL}, {@link #BY_SEED} or {@link #BY_SIZE}
+     * @param key the seed id or size key, ignored for {@link #ALL}
+     * @param p the percentile, from 0 for the lowest score to 100 for the highest
+     * @return the score, or NaN if no game was won
+     */
+    public synchronized double percentile(int scope, long key, double p) {
+        double[] scores = wonScores(scope, key);
+        if (scores.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(Math.min(Math.max(p, 0), 100) / 100 * scores.length);
+        return select(scores, Math.max(rank - 1, 0));
+    }
+
+    /**
+     * Counts the scores won in equal bins between two scores. Scores outside of them are
+     * counted in the first or last bin.
+     * @param scope one of {@link #ALL}, {@link #BY_SEED} or {@link #BY_SIZE}
+     * @param key the seed id or size key, ignored for {@link #ALL}
+     * @param low the lowest score of the first bin
+     * @param high the highest score of the last bin
+     * @param bins the number of bins
+     * @return the number of scores in each bin
+     */
+    public synchronized long[] histogram(int scope, long key, double low, double high,
+        int bins) {
+        long[] counts = new long[bins];
+        IntList list = select(scope, key);
+        int n = list == null ? size : list.size;
+        double scale = high > low ? bins / (high - low) : 0;
+        for (int i = 0; i < n; i++) {
+            int index = list == null ? i : list.items[i];
+            if (statuses[index] == MinesweeperEngine.WON) {
+                int bin = (int) ((score(index) - low) * scale);
+                counts[Math.min(Math.max(bin, 0), bins - 1)]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the indices of the results in a scope.
+     * @param scope one of {@link #ALL}, {@link #BY_SEED} or {@link #BY_SIZE}
+     * @param key the seed id or size key, ignored for {@link #ALL}
+     * @return the indices, or null for every result
+     */
+    private IntList select(int scope, long key) {
+        if (scope == ALL) {
+            return null;
+        }
+        IntList list = (scope == BY_SEED ? bySeed : bySize).get(key);
+        return list == null ? new IntList() : list;
+    }
+
+    /**
+     * Returns the scores of the results in a scope that were won.
+     * @param scope one of {@link #ALL}, {@link #BY_SEED} or {@link #BY_SIZE}
+     * @param key the seed id or size key, ignored for {@link #ALL}
+     * @return the scores, in no particular order
+     */
+    private double[] wonScores(int scope, long key) {
+        IntList list = select(scope, key);
+        int n = list == null ? size : list.size;
+        double[] scores = new double[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int index = list == null ? i : list.items[i];
+            if (statuses[index] == MinesweeperEngine.WON) {
+                scores[count++] = score(index);
+            }
+        }
+        return Arrays.copyOf(scores, count);
+    }
+
+    /**
+     * Returns the score of a result, computed like {@link MinesweeperEngine#score}: 100
+     * times the squares of the board over the rounds played, which has no upper bound.
+     * @param index the index of the result
+     * @return the score, which is zero unless the game was won
+     */
+    private double score(int index) {
+        if (statuses[index] != MinesweeperEngine.WON || rounds[index] == 0) {
+            return 0;
+        }
+        return (double) rows[index] * cols[index] * 100.0 / rounds[index];
+    }
+
+    /**
+     * Indicates whether or not one result ranks above another.
+     * @param a the index of one result
+     * @param b the index of the other result
+     * @return true if {@code a} ranks above {@code b}; false otherwise
+     */
+    private boolean better(int a, int b) {
+        int byScore = Double.compare(score(a), score(b));
+        if (byScore != 0) {
+            return byScore > 0;
+        }
+        if (millis[a] != millis[b]) {
+            return millis[a] < millis[b];
+        }
+        return a < b;
+    }
+
+    /**
+     * Moves an entry of the min-heap up until its parent ranks above it.
+     * @param heap the heap of result indices
+     * @param at the position of the entry
+     */
+    private void siftUp(int[] heap, int at) {
+        int index = heap[at];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (!better(heap[parent], index)) {
+                break;
+            }
+            heap[at] = heap[parent];
+            at = parent;
+        }
+        heap[at] = index;
+    }
+
+    /**
+     * Moves an entry of the min-heap down until it ranks above both of its children.
+     * @param heap the heap of result indices
+     * @param at the position of the entry
+     * @param count the number of entries in the heap
+     */
+    private void siftDown(int[] heap, int at, int count) {
+        int index = heap[at];
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && better(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!better(index, heap[child])) {
+                break;
+            }
+            heap[at] = heap[child];
+            at = child;
+        }
+        heap[at] = index;
+    }
+
+    /**
+     * Returns the value that would be at a position of an array if it were sorted,
+     * partly reordering the array.
+     * @param values the values
+     * @param rank the position
+     * @return the value
+     */
+    private static double select(double[] values, int rank) {
+        int low = 0;
+        int high = values.length - 1;
+        while (low < high) {
+            double pivot = values[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            if (rank <= j) {
+                high = j;
+            } else if (rank >= i) {
+                low = i;
+            } else {
+                break;
+            }
+        }
+        return values[rank];
+    }
+
+    /**
+     * Adds a result to the index of its seed and of its board size.
+     * @param index the index of the result
+     */
+    private void index(int index) {
+        bySeed.computeIfAbsent(seeds[index], seed -> new IntList()).add(index);
+        bySize.computeIfAbsent(sizeKey(rows[index], cols[index]), k -> new IntList())
+            .add(index);
+    }
+
+    /**
+     * Doubles the room in every column.
+     */
+    private void grow() {
+        int capacity = seeds.length * 2;
+        seeds = Arrays.copyOf(seeds, capacity);
+        rows = Arrays.copyOf(rows, capacity);
+        cols = Arrays.copyOf(cols, capacity);
+        rounds = Arrays.copyOf(rounds, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        millis = Arrays.copyOf(millis, capacity);
+    }
+
+    /**
+     * Takes the lock that keeps a second store from writing to the file.
+     * @throws IOException if another store holds the lock, or it cannot be taken
+     */
+    private void lock() throws IOException {
+        boolean locked;
+        try {
+            locked = channel.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            //another store in this process has the file open for writing
+            locked = false;
+        }
+        if (!locked) {
+            throw new IOException(file + " is open for writing elsewhere");
+        }
+    }
+
+    /**
+     * Reads every whole block of the file into memory, or starts a new file if it is
+     * empty. When writing, a block that was not written completely is cut off so new
+     * blocks follow the last whole one; when only reading, it is just left unread.
+     * @throws IOException if the file cannot be read or is not a score store
+     */
+    private void load() throws IOException {
+        long length = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1);
+        if (length == 0) {
+            if (!readOnly) {
+                header.put(MAGIC).put((byte) VERSION).flip();
+                channel.write(header, 0);
+                channel.position(header.capacity());
+            }
+            return;
+        }
+        if (length < header.capacity()) {
+            throw new IOException(file + " is not a score store");
+        }
+        readFully(header, 0);
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || header.get() != VERSION) {
+            throw new IOException(file + " is not a score store");
+        }
+        long position = header.capacity();
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER);
+        while (position + BLOCK_HEADER <= length) {
+            blockHeader.clear();
+            readFully(blockHeader, position);
+            int count = blockHeader.getInt(0);
+            if (count <= 0 || count > BLOCK_SIZE
+                || position + BLOCK_HEADER + (long) count * RECORD > length) {
+                break;
+            }
+            ByteBuffer block = ByteBuffer.allocate(count * RECORD);
+            readFully(block, position + BLOCK_HEADER);
+            CRC32 crc = new CRC32();
+            crc.update(block.array());
+            if ((int) crc.getValue() != blockHeader.getInt(4)) {
+                break;
+            }
+            readBlock(block, count);
+            position += BLOCK_HEADER + (long) count * RECORD;
+        }
+        written = size;
+        if (!readOnly) {
+            channel.truncate(position);
+            channel.position(position);
+        }
+    }
+
+    /**
+     * Appends the results of one block read from the file.
+     * @param block the columns of the block
+     * @param count the number of results in the block
+     */
+    private void readBlock(ByteBuffer block, int count) {
+        while (seeds.length < size + count) {
+            grow();
+        }
+        for (int i = size; i < size + count; i++) {
+            seeds[i] = block.getLong();
+        }
+        for (int i = size; i < size + count; i++) {
+            rows[i] = block.getInt();
+        }
+        for (int i = size; i < size + count; i++) {
+            cols[i] = block.getInt();
+        }
+        for (int i = size; i < size + count; i++) {
+            rounds[i] = block.getInt();
+        }
+        block.get(statuses, size, count);
+        for (int i = size; i < size + count; i++) {
+            millis[i] = block.getLong();
+        }
+        for (int end = size + count; size < end; size++) {
+            index(size);
+        }
+    }
+
+    /**
+     * Fills a buffer from the file.
+     * @param buffer the buffer to fill
+     * @param position where in the file to start reading
+     * @throws IOException if the file ends first or cannot be read
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException(file + " ended unexpectedly");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,322 @@
+package cs1302.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link cs1302.game.SeedCache} class keeps the boards of recently loaded seed files,
+ * so that many games on one seed parse it and compute its adjacency only once. Each
+ * load returns a {@link MinesweeperBoard#snapshot} of the cached board: a board of the
+ * caller's own that shares the cached mines and counts until it writes to them.
+ *
+ * <p>Boards are found by the path of their seed file, as long as the file's size and
+ * modification time have not changed, and then by a hash of their mine layout, so a
+ * text seed and its binary conversion, or two copies of one seed, share a single board.
+ * The least recently used boards are evicted once the boards kept take more than the
+ * memory budget. One cache, {@link #getDefault}, is shared by the whole process, and
+ * is safe to use from many threads.
+ */
+public class SeedCache {
+
+    /** The memory budget of the shared cache, in bytes. */
+    public static final long DEFAULT_BUDGET = 64L << 20;
+
+    private static final SeedCache DEFAULT = new SeedCache(DEFAULT_BUDGET);
+
+    //a rough cost of a board besides its squares: the object, its tables and map entries
+    private static final int OVERHEAD = 256;
+
+    private final long budget;
+    private final Map<Path, FileEntry> files = new HashMap<>();
+    //least recently used first
+    private final LinkedHashMap<Long, Layout> layouts = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long shared = 0;
+    private long evictions = 0;
+
+    /**
+     * A cached board, which is never played on, and the seed files it was loaded from.
+     */
+    private static class Layout {
+
+        private final long hash;
+        private final MinesweeperBoard board;
+        private final long weight;
+        private final List<Path> paths = new ArrayList<>(1);
+
+        /**
+         * Creates a cache entry for a board.
+         * @param hash the hash of the board's mine layout
+         * @param board the board, with adjacency computed
+         */
+        Layout(long hash, MinesweeperBoard board) {
+            this.hash = hash;
+            this.board = board;
+            this.weight = (long) board.getRows() * board.getCols() + OVERHEAD;
+        }
+    }
+
+    /**
+     * What is known about a seed file: its size and modification time when it was
+     * loaded, and the board it held.
+     */
+    private static class FileEntry {
+
+        private final long size;
+        private final long modified;
+        private final Layout layout;
+
+        /**
+         * Records a loaded seed file.
+         * @param size the size of the file
+         * @param modified the modification time of the file, in milliseconds
+         * @param layout the board loaded from it
+         */
+        FileEntry(long size, long modified, Layout layout) {
+            this.size = size;
+            this.modified = modified;
+            this.layout = layout;
+        }
+    }
+
+    /**
+     * Creates an empty cache.
+     * @param budget the most bytes of boards to keep
+     */
+    public SeedCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the cache shared by the whole process.
+     * @return the shared cache
+     */
+    public static SeedCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a new board loaded from a seed file, parsing the file only if its board is
+     * not cached already.
+     * @param seedPath the path of the seed file
+     * @return a board of the caller's own, with adjacency computed and nothing revealed
+     * @throws IOException if the file cannot be read
+     * @throws java.util.InputMismatchException if the file is malformed
+     */
+    public MinesweeperBoard load(String seedPath) throws IOException {
+        return load(seedPath, null);
+    }
+
+    /**
+     * Returns a board loaded from a seed file like {@link #load(String)}, but reusing a
+     * board the caller is done with when it has the same size: the board is
+     * {@link MinesweeperBoard#restore restored} onto the cached one, which shares its
+     * chunks without copying them, instead of a new snapshot being made.
+     * @param seedPath the path of the seed file
+     * @param reuse a board of the caller's own to reuse, or null
+     * @return {@code reuse} or a new board, with adjacency computed and nothing revealed
+     * @throws IOException if the file cannot be read
+     * @throws java.util.InputMismatchException if the file is malformed
+     */
+    public MinesweeperBoard load(String seedPath, MinesweeperBoard reuse) throws IOException {
+        Path path = Paths.get(seedPath).toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            //the loader reports a file that cannot be read the way it always has
+            return SeedLoader.load(seedPath);
+        }
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        synchronized (this) {
+            FileEntry file = files.get(path);
+            if (file != null && file.size == size && file.modified == modified
+                && layouts.get(file.layout.hash) == file.layout) {
+                hits++;
+                return copy(file.layout.board, reuse);
+            }
+        }
+        //parsing is done outside of the lock, so other threads keep loading meanwhile
+        MinesweeperBoard board = SeedLoader.load(seedPath);
+        long hash = hash(board);
+        synchronized (this) {
+            misses++;
+            Layout layout = layouts.get(hash);
+            if (layout != null && sameMines(layout.board, board)) {
+                shared++;
+            } else {
+                layout = new Layout(hash, board);
+                if (layout.weight > budget) {
+                    return board;
+                }
+                if (layouts.containsKey(hash)) {
+                    //a different layout with the same hash; the newer one replaces it
+                    evict(layouts.remove(hash));
+                }
+                layouts.put(hash, layout);
+                bytes += layout.weight;
+                trim();
+            }
+            if (!layout.paths.contains(path)) {
+                layout.paths.add(path);
+            }
+            files.put(path, new FileEntry(size, modified, layout));
+            return copy(layout.board, reuse);
+        }
+    }
+
+    /**
+     * Returns a board of the caller's own over the chunks of a cached board.
+     * @param cached the cached board
+     * @param reuse a board to restore onto the cached one, or null
+     * @return {@code reuse} if it has the same size; otherwise a snapshot
+     */
+    private static MinesweeperBoard copy(MinesweeperBoard cached, MinesweeperBoard reuse) {
+        if (reuse == null || reuse.getRows() != cached.getRows()
+            || reuse.getCols() != cached.getCols()) {
+            return cached.snapshot();
+        }
+        reuse.restore(cached);
+        return reuse;
+    }
+
+    /**
+     * Returns the number of loads that found their seed file's board in the cache.
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of loads that had to parse their seed file.
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of misses whose board turned out to be cached already under
+     * another seed file.
+     * @return the number of misses that shared a cached board
+     */
+    public synchronized long getShared() {
+        return shared;
+    }
+
+    /**
+     * Returns the number of boards evicted to stay within the budget.
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the estimated number of bytes taken by the cached boards.
+     * @return the bytes used
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of boards cached.
+     * @return the number of boards
+     */
+    public synchronized int size() {
+        return layouts.size();
+    }
+
+    /**
+     * Forgets every cached board. Boards already handed out are not affected.
+     */
+    public synchronized void clear() {
+        layouts.clear();
+        files.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Returns the statistics of the cache on one line.
+     * @return the statistics
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("SeedCache: %d boards, %d bytes of %d, %d hits, %d misses"
+            + " (%d shared), %d evictions", layouts.size(), bytes, budget, hits, misses,
+            shared, evictions);
+    }
+
+    /**
+     * Evicts the least recently used boards until the cache is within its budget.
+     */
+    private void trim() {
+        Iterator<Layout> oldest = layouts.values().iterator();
+        while (bytes > budget && oldest.hasNext()) {
+            Layout layout = oldest.next();
+            oldest.remove();
+            evict(layout);
+        }
+    }
+
+    /**
+     * Forgets a board that has been removed from {@code layouts}, along with the seed
+     * files that led to it.
+     * @param layout the board removed
+     */
+    private void evict(Layout layout) {
+        bytes -= layout.weight;
+        evictions++;
+        for (Path path : layout.paths) {
+            FileEntry file = files.get(path);
+            if (file != null && file.layout == layout) {
+                files.remove(path);
+            }
+        }
+    }
+
+    /**
+     * Returns a hash of the size and mine layout of a board, which identifies its seed
+     * however the seed file was written.
+     * @param board the board
+     * @return the hash
+     */
+    static long hash(MinesweeperBoard board) {
+        long hash = MinesweeperBoard.hash(MinesweeperBoard.HASH_BASIS, board.getRows());
+        return board.hashMines(MinesweeperBoard.hash(hash, board.getCols()));
+    }
+
+    /**
+     * Indicates whether or not two boards have the same size and mines.
+     * @param a one board
+     * @param b the other board
+     * @return true if they are the same; false otherwise
+     */
+    private static boolean sameMines(MinesweeperBoard a, MinesweeperBoard b) {
+        if (a.getRows() != b.getRows() || a.getCols() != b.getCols()
+            || a.getMineCount() != b.getMineCount()) {
+            return false;
+        }
+        int i = a.nextMine(0);
+        int j = b.nextMine(0);
+        while (i == j && i >= 0) {
+            i = a.nextMine(i + 1);
+            j = b.nextMine(j + 1);
+        }
+        return i == j;
+    }
+}
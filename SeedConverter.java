@@ -0,0 +1,181 @@
+package cs1302.game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.InputMismatchException;
+
+/**
+ * The {@link cs1302.game.SeedConverter} class writes boards in the seed formats read by
+ * {@link SeedLoader}. Its main method converts a text seed file into a binary one. For
+ * each binary board the smaller of the two mine encodings is chosen: a bitmap costs one
+ * bit per square, while varint gaps cost one to five bytes per mine.
+ */
+public class SeedConverter {
+
+    /**
+     * Converts the seed file named by the first argument into a binary seed file named
+     * by the second argument. Binary seed files may also be converted again.
+     * @param args contains the input and output seed file paths
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: SeedConverter SEED_FILE_PATH BINARY_SEED_FILE_PATH");
+            System.exit(1);
+        }
+        try {
+            MinesweeperBoard board = SeedLoader.load(args[0]);
+            long size = write(board, args[1]);
+            System.out.println("Wrote " + size + " bytes to " + args[1]);
+        } catch (InputMismatchException e) {
+            System.err.println();
+            System.err.println("Seed File Malformed Error: Cannot"
+                + " create a mine field with that many rows and/or columns!");
+            System.exit(3);
+        } catch (IOException e) {
+            System.err.println();
+            System.err.println("Seed File Not Found Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Writes the mines of a board to a binary seed file.
+     * @param board the board whose mines are written
+     * @param seedPath of type String which specifies name of file to be written
+     * @return the number of bytes written
+     * @throws IOException if the file cannot be written
+     */
+    public static long write(MinesweeperBoard board, String seedPath) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(seedPath), 1 << 16))) {
+            write(board, out);
+            return out.size();
+        }
+    }
+
+    /**
+     * Writes the mines of a board in the binary seed format.
+     * @param board the board whose mines are written
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public static void write(MinesweeperBoard board, DataOutputStream out) throws IOException {
+        int squares = board.getRows() * board.getCols();
+        long bitmapSize = (squares + 7L) >>> 3;
+        long varintSize = 0;
+        int previous = -1;
+        for (int index = board.nextMine(0); index >= 0; index = board.nextMine(index + 1)) {
+            varintSize += varintLength(index - previous - 1);
+            previous = index;
+        }
+        boolean bitmap = bitmapSize <= varintSize;
+        out.write(SeedLoader.BINARY_MAGIC);
+        out.writeByte(SeedLoader.BINARY_VERSION);
+        out.writeByte(bitmap ? SeedLoader.BITMAP_ENCODING : SeedLoader.VARINT_ENCODING);
+        out.writeInt(board.getRows());
+        out.writeInt(board.getCols());
+        out.writeInt(board.getMineCount());
+        if (bitmap) {
+            int bits = 0;
+            int byteIndex = 0;
+            for (int index = board.nextMine(0); index >= 0; index = board.nextMine(index + 1)) {
+                //bytes with no mines in them are written as zeros
+                while (byteIndex < index >>> 3) {
+                    out.writeByte(bits);
+                    bits = 0;
+                    byteIndex++;
+                }
+                bits |= 1 << (index & 7);
+            }
+            while (byteIndex < bitmapSize) {
+                out.writeByte(bits);
+                bits = 0;
+                byteIndex++;
+            }
+        } else {
+            previous = -1;
+            for (int index = board.nextMine(0); index >= 0; index = board.nextMine(index + 1)) {
+                writeVarint(out, index - previous - 1);
+                previous = index;
+            }
+        }
+    }
+
+    /**
+     * Writes the mines of a board in the text seed format: the rows and columns on the
+     * first line, the number of mines on the second, then one row and column pair per
+     * line. The digits are written straight into a byte buffer.
+     * @param board the board whose mines are written
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeText(MinesweeperBoard board, OutputStream out) throws IOException {
+        byte[] buffer = new byte[1 << 13];
+        int length = 0;
+        int cols = board.getCols();
+        length = appendInt(buffer, length, board.getRows(), ' ');
+        length = appendInt(buffer, length, cols, '\n');
+        length = appendInt(buffer, length, board.getMineCount(), '\n');
+        for (int index = board.nextMine(0); index >= 0; index = board.nextMine(index + 1)) {
+            //a pair is at most 22 bytes long
+            if (length > buffer.length - 24) {
+                out.write(buffer, 0, length);
+                length = 0;
+            }
+            length = appendInt(buffer, length, index / cols, ' ');
+            length = appendInt(buffer, length, index % cols, '\n');
+        }
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * Appends the decimal digits of a non-negative int and a separator to a buffer.
+     * @param buffer the buffer to append to
+     * @param length the number of bytes already in the buffer
+     * @param value the value to append
+     * @param separator the character written after the digits
+     * @return the new number of bytes in the buffer
+     */
+    private static int appendInt(byte[] buffer, int length, int value, char separator) {
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int k = length + digits - 1; k >= length; k--) {
+            buffer[k] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        buffer[length + digits] = (byte) separator;
+        return length + digits + 1;
+    }
+
+    /**
+     * Returns the number of bytes a value takes as an unsigned LEB128 varint.
+     * @param value the non-negative value
+     * @return the encoded length in bytes
+     */
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Writes a non-negative value as an unsigned LEB128 varint.
+     * @param out the stream to write to
+     * @param value the value to write
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,372 @@
+package cs1302.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * The {@link cs1302.game.SeedGenerator} class places mines uniformly at random on boards
+ * of one size and writes them out as seed files. Each board is drawn from its own
+ * {@link SplittableRandom} split off a seeded root, so a corpus is reproducible from its
+ * seed and any one board can be regenerated without the others.
+ *
+ * <p>Mines are chosen by a partial Fisher-Yates shuffle of a reusable array holding every
+ * square that may hold a mine; only as many swaps as there are mines are made per
+ * board, and they are undone afterwards so every board starts from the squares in
+ * order. Boards too big for the array are sampled against a {@link BitSet} instead.
+ *
+ * <p>Two options constrain the boards. With a first click, that square and its
+ * neighbours never hold a mine, so the first reveal opens an area. With no-guess as
+ * well, boards that {@link MinesweeperSolver} cannot win from the first click without
+ * guessing are thrown away and drawn again.
+ */
+public class SeedGenerator {
+
+    /** The most boards drawn for one no-guess board before giving up. */
+    public static final int MAX_ATTEMPTS = 10_000;
+
+    //boards with more squares than this are sampled without an index array
+    private static final int MAX_SHUFFLE = 1 << 24;
+
+    private final int rows;
+    private final int cols;
+    private final int mines;
+    private int firstRow = -1;
+    private int firstCol = -1;
+    private boolean noGuess = false;
+
+    //the squares that may hold a mine, in index order between boards
+    private int[] candidates;
+    private int candidateCount;
+    //the position each candidate was swapped with by the shuffle, to undo it
+    private int[] swaps;
+    private int[] placed;
+    private int attempts;
+
+    /**
+     * Creates a generator for boards of one size and number of mines.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param mines the number of mines on each board
+     * @throws IllegalArgumentException if the board cannot be stored or loaded, or
+     *     cannot hold that many mines
+     */
+    public SeedGenerator(int rows, int cols, int mines) {
+        if (rows < SeedLoader.MIN_SIZE || cols < SeedLoader.MIN_SIZE
+            || !MinesweeperBoard.isValidSize(rows, cols)) {
+            throw new IllegalArgumentException("Cannot create a mine field with "
+                + rows + " rows and " + cols + " columns");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.mines = mines;
+        checkMines();
+    }
+
+    /**
+     * Generates boards and writes each one to its own seed file in a directory.
+     * @param args contains the size, number of mines, number of boards, output
+     *     directory and options
+     */
+    public static void main(String[] args) {
+        String usage = "Usage: SeedGenerator ROWS COLS MINES COUNT OUT_DIR [--seed N]"
+            + " [--first-click ROW COL] [--no-guess] [--binary]";
+        if (args.length < 5) {
+            System.err.println(usage);
+            System.exit(1);
+        }
+        long seed = System.nanoTime();
+        boolean binary = false;
+        try {
+            SeedGenerator generator = new SeedGenerator(Integer.parseInt(args[0]),
+                Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            int count = Integer.parseInt(args[3]);
+            for (int i = 5; i < args.length; i++) {
+                if (args[i].equals("--seed") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--first-click") && i + 2 < args.length) {
+                    generator.setFirstClick(Integer.parseInt(args[i + 1]),
+                        Integer.parseInt(args[i + 2]));
+                    i += 2;
+                } else if (args[i].equals("--no-guess")) {
+                    generator.setNoGuess(true);
+                } else if (args[i].equals("--binary")) {
+                    binary = true;
+                } else {
+                    System.err.println(usage);
+                    System.exit(1);
+                }
+            }
+            File directory = new File(args[4]);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                System.err.println("Output Directory Error: " + args[4]);
+                System.exit(2);
+            }
+            long start = System.nanoTime();
+            long tried = generator.writeAll(directory, count, seed, binary);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Wrote %d boards (%d drawn) with seed %d in %.3f s"
+                + " (%.1f boards/sec)%n", count, tried, seed, seconds,
+                count / Math.max(seconds, 1e-9));
+        } catch (NumberFormatException e) {
+            System.err.println(usage);
+            System.exit(1);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.err.println("Invalid Generator Parameters: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Seed File Write Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Keeps the first click and its neighbours free of mines.
+     * @param row the row index of the first click
+     * @param col the column index of the first click
+     * @throws IllegalArgumentException if the square is off the board or too few
+     *     squares are left for the mines
+     */
+    public void setFirstClick(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IllegalArgumentException("First click " + row + " " + col
+                + " is off the board");
+        }
+        firstRow = row;
+        firstCol = col;
+        candidates = null;
+        checkMines();
+    }
+
+    /**
+     * Chooses whether or not boards that need a guess are thrown away. Requires a first
+     * click, which is where the solver starts.
+     * @param noGuess true to keep only boards that can be solved without guessing
+     * @throws IllegalStateException if no first click has been set
+     */
+    public void setNoGuess(boolean noGuess) {
+        if (noGuess && firstRow < 0) {
+            throw new IllegalStateException("--no-guess needs --first-click");
+        }
+        this.noGuess = noGuess;
+    }
+
+    /**
+     * Returns the number of boards drawn by the last call to {@link #generate}, which is
+     * more than one when no-guess boards were thrown away.
+     * @return the number of boards drawn
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Generates {@code count} boards and writes them to {@code board-N.seed} files in a
+     * directory. One board and one in-memory buffer are reused for all of them: each
+     * board is written to the cleared buffer, which then goes to its file in one write.
+     * @param directory the directory to write to
+     * @param count the number of boards
+     * @param seed the seed of the root random number generator
+     * @param binary true to write binary seed files; false for text
+     * @return the total number of boards drawn
+     * @throws IOException if a file cannot be written
+     */
+    public long writeAll(File directory, int count, long seed, boolean binary)
+        throws IOException {
+        SplittableRandom root = new SplittableRandom(seed);
+        String format = "board-%0" + Math.max(1, Integer.toString(count - 1).length()) + "d"
+            + BatchReplay.SEED_EXTENSION;
+        MinesweeperBoard board = null;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream data = new DataOutputStream(buffer);
+        long tried = 0;
+        for (int i = 0; i < count; i++) {
+            board = generate(root.split(), board);
+            tried += attempts;
+            buffer.reset();
+            if (binary) {
+                SeedConverter.write(board, data);
+            } else {
+                SeedConverter.writeText(board, buffer);
+            }
+            File file = new File(directory, String.format(format, i));
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                buffer.writeTo(out);
+            }
+        }
+        return tried;
+    }
+
+    /**
+     * Generates one board with adjacency computed and nothing revealed.
+     * @param random the random number generator to draw the board from
+     * @param reuse a board to clear and fill if it has the right size, or null
+     * @return the generated board
+     * @throws IllegalStateException if no no-guess board was found in
+     *     {@link #MAX_ATTEMPTS} draws
+     */
+    public MinesweeperBoard generate(SplittableRandom random, MinesweeperBoard reuse) {
+        MinesweeperBoard board = reuse;
+        if (board == null || board.getRows() != rows || board.getCols() != cols) {
+            board = new MinesweeperBoard(rows, cols);
+        }
+        for (attempts = 1; attempts <= MAX_ATTEMPTS; attempts++) {
+            board.clear();
+            placeMines(board, random);
+            board.computeAdjacency();
+            if (!noGuess) {
+                return board;
+            }
+            //the solver plays on the board itself, so the mines are kept to put back
+            if (placed == null) {
+                placed = new int[mines];
+            }
+            int k = 0;
+            for (int index = board.nextMine(0); index >= 0; index = board.nextMine(index + 1)) {
+                placed[k++] = index;
+            }
+            if (solvesWithoutGuessing(board)) {
+                board.clear();
+                for (int index : placed) {
+                    board.placeMine(index / cols, index % cols);
+                }
+                board.computeAdjacency();
+                return board;
+            }
+        }
+        throw new IllegalStateException("No board without guesses found in "
+            + MAX_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Places the mines uniformly among the squares that may hold one.
+     * @param board the empty board to place the mines on
+     * @param random the random number generator to draw from
+     */
+    private void placeMines(MinesweeperBoard board, SplittableRandom random) {
+        int squares = rows * cols;
+        if (squares > MAX_SHUFFLE) {
+            placeSparse(board, random);
+            return;
+        }
+        if (candidates == null) {
+            candidates = new int[squares];
+            candidateCount = 0;
+            for (int index = 0; index < squares; index++) {
+                if (!isOpening(index)) {
+                    candidates[candidateCount++] = index;
+                }
+            }
+            swaps = new int[mines];
+        }
+        for (int i = 0; i < mines; i++) {
+            int j = i + random.nextInt(candidateCount - i);
+            swaps[i] = j;
+            int index = candidates[j];
+            candidates[j] = candidates[i];
+            candidates[i] = index;
+            board.placeMine(index / cols, index % cols);
+        }
+        //the swaps are undone in reverse, so the next board does not depend on this one
+        for (int i = mines - 1; i >= 0; i--) {
+            int j = swaps[i];
+            int index = candidates[j];
+            candidates[j] = candidates[i];
+            candidates[i] = index;
+        }
+    }
+
+    /**
+     * Places the mines on a board too big for an index array by drawing squares until
+     * enough distinct ones are found. When more than half of the squares get a mine, the
+     * squares left without one are drawn instead.
+     * @param board the empty board to place the mines on
+     * @param random the random number generator to draw from
+     */
+    private void placeSparse(MinesweeperBoard board, SplittableRandom random) {
+        int squares = rows * cols;
+        int available = squares - openingSize();
+        boolean drawSafe = mines > available / 2;
+        int draws = drawSafe ? available - mines : mines;
+        BitSet drawn = new BitSet(squares);
+        for (int found = 0; found < draws; ) {
+            int index = random.nextInt(squares);
+            if (!drawn.get(index) && !isOpening(index)) {
+                drawn.set(index);
+                found++;
+                if (!drawSafe) {
+                    board.placeMine(index / cols, index % cols);
+                }
+            }
+        }
+        if (drawSafe) {
+            for (int index = drawn.nextClearBit(0); index < squares;
+                index = drawn.nextClearBit(index + 1)) {
+                if (!isOpening(index)) {
+                    board.placeMine(index / cols, index % cols);
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays the board from the first click and reports whether the solver won it
+     * without a single guess.
+     * @param board the board to play, which is left part way through a game
+     * @return true if no guess was needed; false otherwise
+     */
+    private boolean solvesWithoutGuessing(MinesweeperBoard board) {
+        MinesweeperEngine engine = new MinesweeperEngine(board);
+        engine.reveal(firstRow, firstCol);
+        MinesweeperSolver solver = new MinesweeperSolver(engine);
+        try {
+            GameResult result = solver.solve();
+            return result.getStatus() == MinesweeperEngine.WON && solver.getGuesses() == 0;
+        } finally {
+            board.removeListener(solver);
+        }
+    }
+
+    /**
+     * Indicates whether or not a square is the first click or one of its neighbours.
+     * @param index the flat index of the square
+     * @return true if the square must stay free of mines; false otherwise
+     */
+    private boolean isOpening(int index) {
+        if (firstRow < 0) {
+            return false;
+        }
+        int row = index / cols;
+        int col = index - row * cols;
+        return Math.abs(row - firstRow) <= 1 && Math.abs(col - firstCol) <= 1;
+    }
+
+    /**
+     * Returns the number of squares kept free of mines around the first click.
+     * @return the number of squares in the opening
+     */
+    private int openingSize() {
+        if (firstRow < 0) {
+            return 0;
+        }
+        int height = Math.min(firstRow + 1, rows - 1) - Math.max(firstRow - 1, 0) + 1;
+        int width = Math.min(firstCol + 1, cols - 1) - Math.max(firstCol - 1, 0) + 1;
+        return height * width;
+    }
+
+    /**
+     * Checks that the mines fit in the squares outside of the opening.
+     * @throws IllegalArgumentException if they do not
+     */
+    private void checkMines() {
+        if (mines < 0 || mines > rows * cols - openingSize()) {
+            throw new IllegalArgumentException("Cannot place " + mines + " mines on "
+                + rows + " by " + cols + " squares with a first click opening of "
+                + openingSize());
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package cs1302.game;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.InputMismatchException;
+
+/**
+ * The {@link cs1302.game.SeedLoader} class reads a seed file into a
+ * {@link MinesweeperBoard}. The file is read through a {@link FileChannel}; large files
+ * are memory-mapped a window at a time and integers are parsed straight from the bytes,
+ * so no {@code String} is created per token.
+ *
+ * <p>A text seed file lists the number of rows, the number of columns, the number of
+ * mines and then one row and column pair per mine, all separated by whitespace.
+ *
+ * <p>A binary seed file, as written by {@link SeedConverter}, starts with the bytes
+ * {@code MSWB}, a version byte and an encoding byte, followed by the number of rows,
+ * columns and mines as big-endian ints. The mines are then stored either as a bitmap
+ * with one bit per square or as varint gaps between the flat indices of consecutive
+ * mines. The format is detected from the first bytes of the file.
+ */
+public class SeedLoader {
+
+    /** The smallest number of rows or columns a seed may ask for. */
+    public static final int MIN_SIZE = 5;
+
+    /** The bytes every binary seed file starts with. */
+    static final byte[] BINARY_MAGIC = {'M', 'S', 'W', 'B'};
+
+    /** The version of the binary seed format that is written and read. */
+    static final int BINARY_VERSION = 1;
+
+    /** Encoding byte for mines stored as a bitmap with one bit per square. */
+    static final int BITMAP_ENCODING = 0;
+
+    /** Encoding byte for mines stored as varint gaps between flat indices. */
+    static final int VARINT_ENCODING = 1;
+
+    /** Files at least this large are memory-mapped instead of read onto the heap. */
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    /** The largest part of a file that is mapped at once. */
+    private static final long MAP_WINDOW = 1 << 28;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private long windowEnd = 0;
+    private ByteBuffer window;
+
+    /**
+     * Creates a loader reading from an open channel.
+     * @param channel the channel to read the seed from
+     * @throws IOException if the size of the channel cannot be read
+     */
+    private SeedLoader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.window = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Reads the seed file at {@code seedPath} and returns the board it describes,
+     * with every square's adjacent mine count already computed.
+     * @param seedPath of type String which specifies name of file to be used
+     * @return the board described by the seed file
+     * @throws FileNotFoundException if the seed file cannot be opened
+     * @throws IOException if the seed file cannot be read
+     * @throws InputMismatchException if the seed file is malformed
+     */
+    public static MinesweeperBoard load(String seedPath) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(seedPath, "r")) {
+            SeedLoader loader = new SeedLoader(file.getChannel());
+            return loader.isBinary() ? loader.parseBinary() : loader.parse();
+        }
+    }
+
+    /**
+     * Parses the seed from the channel.
+     * @return the board described by the seed
+     * @throws IOException if the channel cannot be read
+     */
+    private MinesweeperBoard parse() throws IOException {
+        int rows = nextInt();
+        int cols = nextInt();
+        if (rows < MIN_SIZE || cols < MIN_SIZE || !MinesweeperBoard.isValidSize(rows, cols)) {
+            throw malformed();
+        }
+        //a seed that stops after its size has no mines
+        int totalMines = hasNext() ? nextInt() : 0;
+        if (totalMines < 0 || totalMines > rows * cols) {
+            throw malformed();
+        }
+        MinesweeperBoard board = new MinesweeperBoard(rows, cols);
+        //a seed may list fewer mines than it declares, but never half a pair
+        for (int i = 0; i < totalMines && hasNext(); i++) {
+            int mineRow = nextInt();
+            int mineCol = nextInt();
+            if (mineRow < 0 || mineRow >= rows || mineCol < 0 || mineCol >= cols) {
+                throw malformed();
+            }
+            board.placeMine(mineRow, mineCol);
+        }
+        //every square's adjacent mine count is computed once, up front
+        board.computeAdjacency();
+        return board;
+    }
+
+    /**
+     * Indicates whether or not the file starts with the binary seed magic bytes.
+     * @return true for a binary seed; false for a text seed
+     * @throws IOException if the channel cannot be read
+     */
+    private boolean isBinary() throws IOException {
+        if (fileSize < BINARY_MAGIC.length || !nextWindow()) {
+            return false;
+        }
+        for (int i = 0; i < BINARY_MAGIC.length; i++) {
+            if (window.get(i) != BINARY_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a binary seed from the channel.
+     * @return the board described by the seed
+     * @throws IOException if the channel cannot be read
+     */
+    private MinesweeperBoard parseBinary() throws IOException {
+        window.position(BINARY_MAGIC.length);
+        int version = nextByte();
+        int encoding = nextByte();
+        int rows = nextBinaryInt();
+        int cols = nextBinaryInt();
+        int totalMines = nextBinaryInt();
+        if (version != BINARY_VERSION || rows < MIN_SIZE || cols < MIN_SIZE
+            || !MinesweeperBoard.isValidSize(rows, cols)
+            || totalMines < 0 || totalMines > rows * cols) {
+            throw malformed();
+        }
+        MinesweeperBoard board = new MinesweeperBoard(rows, cols);
+        int squares = rows * cols;
+        if (encoding == BITMAP_ENCODING) {
+            int length = (int) ((squares + 7L) >>> 3);
+            for (int i = 0; i < length; i++) {
+                int bits = nextByte();
+                if (bits < 0) {
+                    throw malformed();
+                }
+                while (bits != 0) {
+                    int index = (i << 3) + Integer.numberOfTrailingZeros(bits);
+                    if (index >= squares) {
+                        throw malformed();
+                    }
+                    board.placeMine(index / cols, index % cols);
+                    bits &= bits - 1;
+                }
+            }
+        } else if (encoding == VARINT_ENCODING) {
+            long index = -1;
+            for (int i = 0; i < totalMines; i++) {
+                index += nextVarint() + 1;
+                if (index >= squares) {
+                    throw malformed();
+                }
+                board.placeMine((int) (index / cols), (int) (index % cols));
+            }
+        } else {
+            throw malformed();
+        }
+        if (board.getMineCount() != totalMines) {
+            throw malformed();
+        }
+        board.computeAdjacency();
+        return board;
+    }
+
+    /**
+     * Reads the next four bytes as a big-endian int.
+     * @return the value read
+     * @throws IOException if the channel cannot be read
+     * @throws InputMismatchException if the file ends first
+     */
+    private int nextBinaryInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = nextByte();
+            if (b < 0) {
+                throw malformed();
+            }
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    /**
+     * Reads the next unsigned LEB128 varint.
+     * @return the value read
+     * @throws IOException if the channel cannot be read
+     * @throws InputMismatchException if the file ends first or the varint is too long
+     */
+    private long nextVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = nextByte();
+            if (b < 0) {
+                throw malformed();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw malformed();
+    }
+
+    /**
+     * Returns the exception thrown for any malformed seed.
+     * @return the malformed seed exception
+     */
+    static InputMismatchException malformed() {
+        return new InputMismatchException("Cannot create a mine field with that many rows"
+            + " and/or columns!");
+    }
+
+    /**
+     * Skips whitespace and indicates whether or not another token follows.
+     * @return true if there is another token; false at the end of the file
+     * @throws IOException if the channel cannot be read
+     */
+    private boolean hasNext() throws IOException {
+        while (true) {
+            if (!window.hasRemaining() && !nextWindow()) {
+                return false;
+            }
+            byte b = window.get(window.position());
+            if (!isWhitespace(b)) {
+                return true;
+            }
+            window.get();
+        }
+    }
+
+    /**
+     * Parses the next whitespace separated token as an int.
+     * @return the parsed value
+     * @throws IOException if the channel cannot be read
+     * @throws InputMismatchException if the token is missing, not an int or out of range
+     */
+    private int nextInt() throws IOException {
+        if (!hasNext()) {
+            throw malformed();
+        }
+        boolean negative = false;
+        long value = 0;
+        int digits = 0;
+        int b = window.get();
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            b = nextByte();
+        }
+        while (b >= 0 && !isWhitespace((byte) b)) {
+            if (b < '0' || b > '9') {
+                throw malformed();
+            }
+            value = value * 10 + (b - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw malformed();
+            }
+            digits++;
+            b = nextByte();
+        }
+        value = negative ? -value : value;
+        if (digits == 0 || value > Integer.MAX_VALUE) {
+            throw malformed();
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads the next byte, moving on to the next window when needed.
+     * @return the next byte, or -1 at the end of the file
+     * @throws IOException if the channel cannot be read
+     */
+    private int nextByte() throws IOException {
+        if (!window.hasRemaining() && !nextWindow()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    /**
+     * Loads the next part of the file into {@code window}. Small files are read onto
+     * the heap in one go and large files are mapped one window at a time.
+     * @return true if more bytes were loaded; false at the end of the file
+     * @throws IOException if the channel cannot be read
+     */
+    private boolean nextWindow() throws IOException {
+        if (windowEnd >= fileSize) {
+            return false;
+        }
+        long length = Math.min(MAP_WINDOW, fileSize - windowEnd);
+        if (fileSize >= MAP_THRESHOLD) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, length);
+        } else {
+            window = ByteBuffer.allocate((int) length);
+            while (window.hasRemaining()) {
+                if (channel.read(window, windowEnd + window.position()) < 0) {
+                    break;
+                }
+            }
+            window.flip();
+        }
+        windowEnd += length;
+        return window.hasRemaining();
+    }
+
+    /**
+     * Indicates whether or not a byte is whitespace in a seed file.
+     * @param b the byte to check
+     * @return true for spaces, tabs, line breaks and form feeds; false otherwise
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+}